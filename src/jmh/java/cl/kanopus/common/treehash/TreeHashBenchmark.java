@@ -0,0 +1,116 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link TreeHash} list building over a tree of ten children per node, with every other node expanded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreeHashBenchmark {
+
+    private static final int CHILDREN = 10;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private TreeHash tree;
+    private String toggledKey;
+
+    @Setup
+    public void setup() {
+        tree = new TreeHash();
+        for (int i = 0; i < size; i++) {
+            String parent = (i < CHILDREN) ? TreeHash.KEY_ROOT : "n" + (i / CHILDREN - 1);
+            NodeHash node = new NodeHash("n" + i, i, parent, "node");
+            node.setExpanded(i % 2 == 0);
+            tree.add(node);
+        }
+        toggledKey = "n" + (CHILDREN / 2);
+        tree.getNodeList();
+        tree.getNodeVisibleList();
+        tree.indexSearch(node -> "node " + node.getData());
+    }
+
+    @Benchmark
+    public List<NodeHash> getNodeVisibleList() {
+        tree.setRefresh(true);
+        return tree.getNodeVisibleList();
+    }
+
+    @Benchmark
+    public List<NodeHash> getNodeVisibleListCached() {
+        return tree.getNodeVisibleList();
+    }
+
+    @Benchmark
+    public List<NodeHash> getNodeList() {
+        tree.setRefresh(true);
+        return tree.getNodeList();
+    }
+
+    @Benchmark
+    public List<NodeHash> addAndRemoveLeaf() {
+        tree.add(new NodeHash("leaf", null, toggledKey, "node"));
+        tree.remove("leaf");
+        return tree.getNodeVisibleList();
+    }
+
+    @Benchmark
+    public List<NodeHash> search() {
+        return tree.search("99");
+    }
+
+    @Benchmark
+    public List<NodeHash> checkAndUncheckSubtree() {
+        tree.propagateCheckDown(toggledKey);
+        tree.propagateUncheckDown(toggledKey);
+        return tree.getSelectionChanges();
+    }
+
+    @Benchmark
+    public List<NodeHash> toggleExpanded() {
+        NodeHash node = tree.getNodeHash(toggledKey);
+        node.setExpanded(!node.isExpanded());
+        return tree.getNodeVisibleList();
+    }
+}
@@ -0,0 +1,170 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link TreeHashCodec} encoding against default Java serialization of the same nodes, kept as a {@code HashMap<String, Node>} with an {@code ArrayList} of child
+ * keys per node. The sizes of both formats are printed by the setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreeHashCodecBenchmark {
+
+    private static final int CHILDREN = 10;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private TreeHash tree;
+    private HashMap<String, DefaultNode> defaultTree;
+    private TreeHashCodec codec;
+    private byte[] encoded;
+    private byte[] serialized;
+    private byte[] defaultSerialized;
+
+    @Setup
+    public void setup() throws IOException {
+        tree = new TreeHash();
+        defaultTree = new HashMap<>();
+        defaultTree.put(TreeHash.KEY_ROOT, new DefaultNode(new NodeHash(TreeHash.KEY_ROOT, null, null)));
+        for (int i = 0; i < size; i++) {
+            String parent = (i < CHILDREN) ? TreeHash.KEY_ROOT : "n" + (i / CHILDREN - 1);
+            NodeHash node = new NodeHash("n" + i, "name " + i, parent, "node");
+            node.setExpanded(i % 2 == 0);
+            tree.add(node);
+            defaultTree.put(node.getKey(), new DefaultNode(node));
+            defaultTree.get(parent).keyChildren.add(node.getKey());
+        }
+        codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        encoded = codec.encode(tree);
+        serialized = serialize(tree);
+        defaultSerialized = serialize(defaultTree);
+        System.out.printf("%n%d nodes: codec %d bytes, java serialization %d bytes, default format %d bytes%n", size, encoded.length, serialized.length, defaultSerialized.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(tree);
+    }
+
+    @Benchmark
+    public TreeHash decode() {
+        return codec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] javaSerialization() throws IOException {
+        return serialize(tree);
+    }
+
+    @Benchmark
+    public Object javaDeserialization() throws IOException, ClassNotFoundException {
+        return deserialize(serialized);
+    }
+
+    @Benchmark
+    public byte[] defaultSerialization() throws IOException {
+        return serialize(defaultTree);
+    }
+
+    @Benchmark
+    public Object defaultDeserialization() throws IOException, ClassNotFoundException {
+        return deserialize(defaultSerialized);
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * The fields of a {@link NodeHash}, as default serialization would write them.
+     */
+    private static final class DefaultNode implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final String keyParent;
+        private final Object data;
+        private final int depth;
+        private final boolean expanded;
+        private final String type;
+        private final boolean selected;
+        private final boolean originalSelected;
+        private final boolean selectable;
+        private final boolean highLight;
+        private final boolean visibleInSearch;
+        private final List<String> keyChildren = new ArrayList<>();
+
+        private DefaultNode(NodeHash node) {
+            this.key = node.getKey();
+            this.keyParent = node.getKeyParent();
+            this.data = node.getData();
+            this.depth = node.getDepth();
+            this.expanded = node.isExpanded();
+            this.type = node.getType();
+            this.selected = node.isSelected();
+            this.originalSelected = node.isOriginalSelected();
+            this.selectable = node.isSelectable();
+            this.highLight = node.isHighLight();
+            this.visibleInSearch = node.isVisibleInSearch();
+        }
+    }
+}
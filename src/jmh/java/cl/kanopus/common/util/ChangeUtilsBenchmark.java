@@ -0,0 +1,115 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import cl.kanopus.common.change.ChangeAction;
+import cl.kanopus.common.change.Comparator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link ChangeUtils}. The target list updates one element of every ten, removes one of every twenty and adds new ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeUtilsBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private List<Entity> sourceList;
+    private List<Entity> targetList;
+
+    public static class Entity {
+        private long id;
+        private String name;
+        private double amount;
+        private List<String> tags;
+
+        Entity(long id, String name, double amount, List<String> tags) {
+            this.id = id;
+            this.name = name;
+            this.amount = amount;
+            this.tags = tags;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Entity) && ((Entity) obj).id == id && Objects.equals(((Entity) obj).name, name);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        sourceList = new ArrayList<>(size);
+        targetList = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            List<String> tags = List.of("t" + (i % 7), "t" + (i % 11));
+            sourceList.add(new Entity(i, "name " + i, i * 1.5, tags));
+            if (i % 20 == 0) {
+                continue;
+            }
+            targetList.add(new Entity(i, (i % 10 == 0) ? "updated " + i : "name " + i, i * 1.5, tags));
+        }
+        for (int i = 1; i <= size / 20; i++) {
+            targetList.add(new Entity(size + i, "new " + i, 0, List.of()));
+        }
+    }
+
+    @Benchmark
+    public ChangeAction checkChange() {
+        return ChangeUtils.checkChange(sourceList.get(size - 1), targetList.get(targetList.size() - 1));
+    }
+
+    @Benchmark
+    public List<Comparator<Entity>> checkChangeOnList() {
+        return ChangeUtils.checkChangeOnList(sourceList, targetList);
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link GsonUtils#custom} round-trips with its date and byte array adapters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonUtilsBenchmark {
+
+    @Param({"16", "4096"})
+    private int payloadSize;
+
+    private Document document;
+    private String json;
+
+    public static class Document {
+        private String name;
+        private Date created;
+        private LocalDate day;
+        private LocalDateTime updated;
+        private byte[] payload;
+    }
+
+    @Setup
+    public void setup() {
+        document = new Document();
+        document.name = "document";
+        document.created = new Date();
+        document.day = LocalDate.now();
+        document.updated = LocalDateTime.now();
+        document.payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++) {
+            document.payload[i] = (byte) i;
+        }
+        json = GsonUtils.custom.toJson(document);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return GsonUtils.custom.toJson(document);
+    }
+
+    @Benchmark
+    public Document fromJson() {
+        return GsonUtils.custom.fromJson(json, Document.class);
+    }
+
+    @Benchmark
+    public Document roundTrip() {
+        return GsonUtils.custom.fromJson(GsonUtils.custom.toJson(document), Document.class);
+    }
+}
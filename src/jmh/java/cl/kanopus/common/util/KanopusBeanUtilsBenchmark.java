@@ -0,0 +1,244 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link KanopusBeanUtils} copies, for both copy engines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KanopusBeanUtilsBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    @Param({"REFLECTION", "GENERATED"})
+    private KanopusBeanUtils.CopyEngine engine;
+
+    private Order order;
+    private List<Order> orders;
+
+    public static class Order {
+        private long id;
+        private String name;
+        private BigDecimal amount;
+        private Date created;
+        private Item item;
+        private List<Item> items;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public void setItem(Item item) {
+            this.item = item;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    public static class OrderDTO {
+        private long id;
+        private String name;
+        private BigDecimal amount;
+        private LocalDateTime created;
+        private Item item;
+        private List<Item> items;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public LocalDateTime getCreated() {
+            return created;
+        }
+
+        public void setCreated(LocalDateTime created) {
+            this.created = created;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public void setItem(Item item) {
+            this.item = item;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    public static class Item {
+        private String code;
+        private int quantity;
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        KanopusBeanUtils.setCopyEngine(engine);
+        orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(newOrder(i));
+        }
+        order = orders.get(0);
+    }
+
+    private static Order newOrder(int i) {
+        Order o = new Order();
+        o.setId(i);
+        o.setName("order " + i);
+        o.setAmount(BigDecimal.valueOf(i * 100L, 2));
+        o.setCreated(new Date());
+        Item item = new Item();
+        item.setCode("I" + i);
+        item.setQuantity(i);
+        o.setItem(item);
+        List<Item> items = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+            Item it = new Item();
+            it.setCode("I" + i + "-" + j);
+            it.setQuantity(j);
+            items.add(it);
+        }
+        o.setItems(items);
+        return o;
+    }
+
+    @Benchmark
+    public OrderDTO copyProperties() {
+        return KanopusBeanUtils.copyProperties(order, OrderDTO.class);
+    }
+
+    @Benchmark
+    public List<OrderDTO> copyList() {
+        return KanopusBeanUtils.copyList(orders, OrderDTO.class);
+    }
+
+    @Benchmark
+    public List<Order> copyListSameType() {
+        return KanopusBeanUtils.copyList(orders, Order.class);
+    }
+}
@@ -0,0 +1,107 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link Utils} formatters and parsers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+    private Date date;
+    private LocalDateTime localDateTime;
+    private String text;
+
+    @Setup
+    public void setup() {
+        date = new Date();
+        localDateTime = LocalDateTime.now();
+        text = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+    }
+
+    @Benchmark
+    public String getNumberFormat() {
+        return Utils.getNumberFormat(1234567.891, true, 2);
+    }
+
+    @Benchmark
+    public String getDecimalFormat() {
+        return Utils.getDecimalFormat(1234567.891);
+    }
+
+    @Benchmark
+    public String getDateFormat() {
+        return Utils.getDateFormat(date);
+    }
+
+    @Benchmark
+    public String getDateTimeFormat() {
+        return Utils.getDateTimeFormat(localDateTime);
+    }
+
+    @Benchmark
+    public Date getDate() {
+        return Utils.getDate("31/12/2025", "dd/MM/yyyy");
+    }
+
+    @Benchmark
+    public String getRutFormat() {
+        return Utils.getRutFormat("123456785");
+    }
+
+    @Benchmark
+    public boolean isRut() {
+        return Utils.isRut("12.345.678-5");
+    }
+
+    @Benchmark
+    public Long parseLong() {
+        return Utils.parseLong("1234567890");
+    }
+
+    @Benchmark
+    public List<String> splitText() {
+        return Utils.splitText(text, 20);
+    }
+}
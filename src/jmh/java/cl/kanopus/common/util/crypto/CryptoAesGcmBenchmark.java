@@ -0,0 +1,88 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link CryptoAesGcm} encryption and decryption, including the key derivation: PBKDF2 per message in the v1 format, HKDF from a cached master key in the v2 format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoAesGcmBenchmark {
+
+    @Param({"16", "4096"})
+    private int plaintextSize;
+
+    private final char[] key = "benchmark-passphrase".toCharArray();
+    private String plaintext;
+    private String encrypted;
+    private String encryptedV1;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(plaintextSize);
+        for (int i = 0; i < plaintextSize; i++) {
+            sb.append((char) ('a' + (i % 26)));
+        }
+        plaintext = sb.toString();
+        encrypted = CryptoAesGcm.encrypt(key, plaintext);
+        encryptedV1 = CryptoAesGcm.encryptV1(key, plaintext);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return CryptoAesGcm.encrypt(key, plaintext);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return CryptoAesGcm.decrypt(key, encrypted);
+    }
+
+    @Benchmark
+    public String encryptV1() {
+        return CryptoAesGcm.encryptV1(key, plaintext);
+    }
+
+    @Benchmark
+    public String decryptV1() {
+        return CryptoAesGcm.decrypt(key, encryptedV1);
+    }
+}
@@ -0,0 +1,86 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link CryptoEngine} batch encryption and decryption on the common fork-join pool against a loop over {@link CryptographyUtils#encrypt(String)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoBatchBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private List<String> plaintexts;
+    private List<String> encrypted;
+
+    @Setup
+    public void setup() {
+        CryptographyUtils.setEncryptKey("benchmark-passphrase", CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        plaintexts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            plaintexts.add(i + ".345.678-9 Juan Pérez");
+        }
+        encrypted = CryptographyUtils.encryptAll(plaintexts);
+    }
+
+    @Benchmark
+    public List<String> encryptLoop() {
+        List<String> result = new ArrayList<>(size);
+        for (String plaintext : plaintexts) {
+            result.add(CryptographyUtils.encrypt(plaintext));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> encryptAll() {
+        return CryptographyUtils.encryptAll(plaintexts);
+    }
+
+    @Benchmark
+    public List<String> decryptAll() {
+        return CryptographyUtils.decryptAll(encrypted);
+    }
+}
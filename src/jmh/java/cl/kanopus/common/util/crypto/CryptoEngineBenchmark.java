@@ -0,0 +1,119 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link CryptoEngine}, with pooled {@link Cipher} and {@link Mac} instances, against the same HKDF and AES-GCM steps looking up new instances for each message, as
+ * before the pools. The {@code Contended} variants run on one thread per core, so the threads compete for the shared pools.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoEngineBenchmark {
+
+    private static final SecureRandom RNG = new SecureRandom();
+
+    private final String plaintext = "12.345.678-9 Juan Pérez";
+    private CryptoEngine engine;
+    private String encrypted;
+    private byte[] masterKey;
+
+    @Setup
+    public void setup() {
+        engine = CryptographyUtils.newEngine("benchmark-passphrase");
+        encrypted = engine.encrypt(plaintext);
+        masterKey = new byte[32];
+        RNG.nextBytes(masterKey);
+    }
+
+    @Benchmark
+    public String engineEncrypt() {
+        return engine.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String engineDecrypt() {
+        return engine.decrypt(encrypted);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String engineEncryptContended() {
+        return engine.encrypt(plaintext);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String engineDecryptContended() {
+        return engine.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public byte[] newInstancesEncrypt() throws GeneralSecurityException {
+        return encryptWithNewInstances();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] newInstancesEncryptContended() throws GeneralSecurityException {
+        return encryptWithNewInstances();
+    }
+
+    private byte[] encryptWithNewInstances() throws GeneralSecurityException {
+        byte[] nonce = new byte[16];
+        byte[] iv = new byte[12];
+        RNG.nextBytes(nonce);
+        RNG.nextBytes(iv);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(nonce, "HmacSHA256"));
+        mac.init(new SecretKeySpec(mac.doFinal(masterKey), "HmacSHA256"));
+        mac.update((byte) 1);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(mac.doFinal(), "AES"), new GCMParameterSpec(128, iv));
+        return cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common;
+
+/**
+ * Management interface of the request latencies recorded by {@link ThreadContext}, by phase.
+ *
+ * @see ThreadContext#registerMBean()
+ */
+public interface LatencyStatsMXBean {
+
+    String[] getPhases();
+
+    long getCount(String phase);
+
+    double getMeanMillis(String phase);
+
+    double getPercentileMillis(String phase, double percentile);
+
+    double getMaxMillis(String phase);
+
+    /**
+     * Returns one line per phase with its count, mean, p50, p90, p99 and max.
+     */
+    String dump();
+
+    void reset();
+}
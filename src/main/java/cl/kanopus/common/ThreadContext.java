@@ -23,27 +23,57 @@
  */
 package cl.kanopus.common;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.slf4j.MDC;
 
+/**
+ * Context of the request served by the current thread: unique id, user, application key and any other object stored by the application.
+ *
+ * <p>
+ * Each thread has its own context, so reading and writing it takes no lock. A thread pool reuses its threads, so the context must be removed when the request ends, with
+ * {@link #destroyContext()} or by closing the {@link Scope} returned by {@link #openContext()}.
+ *
+ * <p>
+ * Work handed to other threads, e.g. executors or {@link CompletableFuture} stages, does not see the context unless it is propagated: {@link #capture()} takes an immutable snapshot
+ * that {@link #runWith(Snapshot, Runnable)} installs around a task, and the {@code wrap} and {@code async} methods do both.
+ *
+ * <p>
+ * The duration of a request is measured with {@link System#nanoTime()} from {@link #initContext()}, and can be split in phases with {@link #mark(String)}. The durations of the phases,
+ * and the {@value #PHASE_TOTAL} duration of each request ended by {@link #destroyContext()}, are aggregated in a {@link LatencyHistogram} per phase, which can be exposed through JMX
+ * with {@link #registerMBean()}.
+ */
 public class ThreadContext {
 
-    private final Map<String, Map> map;
+    public static final String PHASE_TOTAL = "total";
     private static final ThreadContext INSTANCE = new ThreadContext();
-    private static final String KEY_THREAD_UNIQUE_ID = "threadUniqueId";
-    private static final String KEY_THREAD_TIME_START = "threadTimeStart";
-    private static final String KEY_THREAD_APP_KEY = "threadAppKey";
-    private static final String KEY_THREAD_USER_EMAIL = "threadUserEmail";
-    private static final String KEY_THREAD_USER_ID = "threadUserId";
-    private static final String KEY_THREAD_USER_NAME = "threadUserName";
-    private static final String KEY_THREAD_COMPANY_ID = "threadCompanyId";
-    private static final String KEY_THREAD_TOKEN = "threadToken";
+    private static final ConcurrentMap<String, LatencyHistogram> LATENCIES = new ConcurrentHashMap<>();
+    private static volatile IdGenerator idGenerator = new TimeOrderedIdGenerator();
+    private static final ThreadLocal<Map<String, Object>> CONTEXT = new ThreadLocal<>();
+    private static final Key<String> KEY_THREAD_UNIQUE_ID = Key.of("threadUniqueId", String.class);
+    private static final Key<Timing> KEY_THREAD_TIMING = Key.of("threadTiming", Timing.class);
+    private static final Key<String> KEY_THREAD_APP_KEY = Key.of("threadAppKey", String.class);
+    private static final Key<String> KEY_THREAD_USER_EMAIL = Key.of("threadUserEmail", String.class);
+    private static final Key<Long> KEY_THREAD_USER_ID = Key.of("threadUserId", Long.class);
+    private static final Key<String> KEY_THREAD_USER_NAME = Key.of("threadUserName", String.class);
+    private static final Key<String> KEY_THREAD_COMPANY_ID = Key.of("threadCompanyId", String.class);
+    private static final Key<String> KEY_THREAD_TOKEN = Key.of("threadToken", String.class);
 
     private ThreadContext() {
-        this.map = Collections.synchronizedMap(new HashMap<>());
     }
 
     public static ThreadContext getInstance() {
@@ -55,81 +85,81 @@ public class ThreadContext {
     }
 
     /**
-     * Returns the unique threadId for the current thread. This value is unique because it includes the thread start timestamp concatenated with the thread name.
+     * Returns the unique id of the request served by the current thread, given by the {@link IdGenerator} when the context was initialized. The id is also in the MDC under
+     * {@code threadUniqueId}.
      *
      * @return a string representing the thread's unique identifier.
      */
     public static String getThreadUniqueId() {
-        String threadUniqueId = (String) getObject(KEY_THREAD_UNIQUE_ID);
+        String threadUniqueId = get(KEY_THREAD_UNIQUE_ID);
         if (threadUniqueId == null) {
             // In exceptional cases where the context wasn't initialized,
             // initialize it here.
             initContext();
-            threadUniqueId = (String) getObject(KEY_THREAD_UNIQUE_ID);
+            threadUniqueId = get(KEY_THREAD_UNIQUE_ID);
         }
         return threadUniqueId;
     }
 
     public static void setAppKey(String appKey) {
-        addObject(KEY_THREAD_APP_KEY, appKey);
-        MDC.put(KEY_THREAD_APP_KEY, appKey);
+        set(KEY_THREAD_APP_KEY, appKey);
+        MDC.put(KEY_THREAD_APP_KEY.getName(), appKey);
     }
 
     public static String getAppKey() {
-        return (String) getObject(KEY_THREAD_APP_KEY);
+        return get(KEY_THREAD_APP_KEY);
     }
 
     public static String getToken() {
-        return (String) getObject(KEY_THREAD_TOKEN);
+        return get(KEY_THREAD_TOKEN);
     }
 
     public static void setToken(String token) {
-        addObject(KEY_THREAD_TOKEN, token);
+        set(KEY_THREAD_TOKEN, token);
     }
 
     public static String getUserEmail() {
-        return (String) getObject(KEY_THREAD_USER_EMAIL);
+        return get(KEY_THREAD_USER_EMAIL);
     }
 
     public static void setUserEmail(String user) {
-        addObject(KEY_THREAD_USER_EMAIL, user);
+        set(KEY_THREAD_USER_EMAIL, user);
     }
 
     public static Long getUserId() {
-        return (Long) getObject(KEY_THREAD_USER_ID);
+        return get(KEY_THREAD_USER_ID);
     }
 
     public static void setUserId(Long userId) {
-        addObject(KEY_THREAD_USER_ID, userId);
+        set(KEY_THREAD_USER_ID, userId);
     }
 
     public static String getUserName() {
-        return (String) getObject(KEY_THREAD_USER_NAME);
+        return get(KEY_THREAD_USER_NAME);
     }
 
     public static void setUserName(String userName) {
-        addObject(KEY_THREAD_USER_NAME, userName);
+        set(KEY_THREAD_USER_NAME, userName);
     }
 
     public static String getCompanyId() {
-        return (String) getObject(KEY_THREAD_COMPANY_ID);
+        return get(KEY_THREAD_COMPANY_ID);
     }
 
     public static void setCompanyId(String companyId) {
-        addObject(KEY_THREAD_COMPANY_ID, companyId);
+        set(KEY_THREAD_COMPANY_ID, companyId);
     }
 
     /**
-     * Returns the context map for the current thread.
+     * Returns the context map for the current thread. The map must only be used by the current thread.
      *
      * @return the context map for the current thread
      */
     public static Map getContextMap() {
-        // Check if the map exists by retrieving it and checking for null.
-        // This is more efficient than checking before fetching the value.
-        Map contextMap = getInstance().map.get(getThreadId());
+        Map<String, Object> contextMap = CONTEXT.get();
         if (contextMap == null) {
-            contextMap = Collections.synchronizedMap(new HashMap<>());
+            contextMap = new HashMap<>();
+            CONTEXT.set(contextMap);
         }
         return contextMap;
     }
@@ -143,10 +173,7 @@ public class ThreadContext {
      *            the object to store
      */
     public static void addObject(String objectKey, Object objectToInsert) {
-        String threadId = getThreadId();
-        Map contextMap = getContextMap();
-        contextMap.put(objectKey, objectToInsert);
-        getInstance().map.put(threadId, contextMap);
+        getContextMap().put(objectKey, objectToInsert);
     }
 
     /**
@@ -157,35 +184,396 @@ public class ThreadContext {
      * @return the object stored in the current thread's ThreadContext, or null if not present
      */
     public static Object getObject(String objectName) {
-        Map contextMap = getContextMap();
-        return contextMap.get(objectName);
+        Map<String, Object> contextMap = CONTEXT.get();
+        return (contextMap != null) ? contextMap.get(objectName) : null;
+    }
+
+    /**
+     * Returns the value stored in the current thread's context under a typed key.
+     *
+     * @throws ClassCastException
+     *             if the value stored under the name of the key is not of the type of the key
+     */
+    public static <T> T get(Key<T> key) {
+        return key.type.cast(getObject(key.name));
+    }
+
+    /**
+     * Stores a value in the current thread's context under a typed key. The value can also be read with {@link #getObject(String)} and the name of the key.
+     */
+    public static <T> void set(Key<T> key, T value) {
+        addObject(key.name, value);
     }
 
     public static long getTotalTimeMillis() {
-        long totalTimeMillis = 0;
-        Object timeStart = getObject(KEY_THREAD_TIME_START);
-        if (timeStart != null) {
-            Date timeEnd = new Date();
-            totalTimeMillis = timeEnd.getTime() - ((Date) timeStart).getTime();
+        Timing timing = get(KEY_THREAD_TIMING);
+        return (timing != null) ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timing.start) : 0;
+    }
+
+    /**
+     * Ends a phase of the request, e.g. {@code mark("db")} after the queries and {@code mark("render")} after the view: the phase lasted since the previous mark, or since
+     * {@link #initContext()}. The duration is added to the breakdown of the request and recorded in the histogram of the phase.
+     *
+     * @return the duration of the phase in nanoseconds, or 0 if the context was not initialized
+     */
+    public static long mark(String phase) {
+        Timing timing = get(KEY_THREAD_TIMING);
+        if (timing == null) {
+            return 0;
+        }
+        long nanos = timing.mark(phase, System.nanoTime());
+        getLatencyHistogram(phase).record(nanos);
+        return nanos;
+    }
+
+    /**
+     * Returns the milliseconds spent in each phase marked by the current request, in the order the phases were first marked.
+     */
+    public static Map<String, Long> getPhaseTimesMillis() {
+        Timing timing = get(KEY_THREAD_TIMING);
+        return (timing != null) ? timing.phaseTimesMillis() : new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the histogram of the durations of a phase, created on first use.
+     */
+    public static LatencyHistogram getLatencyHistogram(String phase) {
+        LatencyHistogram histogram = LATENCIES.get(phase);
+        return (histogram != null) ? histogram : LATENCIES.computeIfAbsent(phase, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns the histograms of all the phases, by phase name.
+     */
+    public static Map<String, LatencyHistogram> getLatencyHistograms() {
+        return Collections.unmodifiableMap(LATENCIES);
+    }
+
+    /**
+     * Registers the latency histograms as the {@code cl.kanopus.common:type=LatencyStats} MXBean of the platform MBean server, if not already registered.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("cl.kanopus.common:type=LatencyStats");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new LatencyStats(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register the latency MBean", e);
         }
-        return totalTimeMillis;
+    }
+
+    /**
+     * Replaces the generator of the unique ids of the contexts, a {@link TimeOrderedIdGenerator} by default.
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = Objects.requireNonNull(generator, "generator");
     }
 
     public static void initContext() {
-        String threadUniqueId = (new Date()).getTime() + "_" + Thread.currentThread().getName();
-        addObject(KEY_THREAD_UNIQUE_ID, threadUniqueId);
-        addObject(KEY_THREAD_TIME_START, new Date());
-        MDC.put(KEY_THREAD_UNIQUE_ID, threadUniqueId);
+        String threadUniqueId = idGenerator.nextId();
+        set(KEY_THREAD_UNIQUE_ID, threadUniqueId);
+        set(KEY_THREAD_TIMING, new Timing(System.nanoTime()));
+        MDC.put(KEY_THREAD_UNIQUE_ID.getName(), threadUniqueId);
+    }
+
+    /**
+     * Initializes the context of the current thread and returns a scope that removes it when closed, e.g. {@code try (ThreadContext.Scope scope = ThreadContext.openContext())}.
+     */
+    public static Scope openContext() {
+        initContext();
+        return new Scope();
     }
 
     /**
      * Removes the context map for the current thread.
      */
     public static void destroyContext() {
-        if (getInstance().map.containsKey(getThreadId())) {
-            getInstance().map.remove(getThreadId());
-            MDC.remove(KEY_THREAD_UNIQUE_ID);
-            MDC.remove(KEY_THREAD_APP_KEY);
+        Timing timing = get(KEY_THREAD_TIMING);
+        if (timing != null) {
+            getLatencyHistogram(PHASE_TOTAL).record(System.nanoTime() - timing.start);
+        }
+        CONTEXT.remove();
+        MDC.remove(KEY_THREAD_UNIQUE_ID.getName());
+        MDC.remove(KEY_THREAD_APP_KEY.getName());
+    }
+
+    /**
+     * Takes an immutable snapshot of the context of the current thread, to run tasks on other threads with it.
+     */
+    public static Snapshot capture() {
+        Map<String, Object> contextMap = CONTEXT.get();
+        return (contextMap == null || contextMap.isEmpty()) ? Snapshot.EMPTY : new Snapshot(new HashMap<>(contextMap));
+    }
+
+    /**
+     * Runs a task with a copy of a snapshot as the context of the current thread, and the unique id and application key of the snapshot in the MDC. The previous context and MDC
+     * values are restored afterwards, so no context is left behind on pooled threads.
+     */
+    public static void runWith(Snapshot snapshot, Runnable task) {
+        Installed installed = new Installed(snapshot);
+        try {
+            task.run();
+        } finally {
+            installed.close();
+        }
+    }
+
+    /**
+     * Calls a task with a snapshot as the context of the current thread.
+     *
+     * @see #runWith(Snapshot, Runnable)
+     */
+    public static <T> T callWith(Snapshot snapshot, Callable<T> task) throws Exception {
+        Installed installed = new Installed(snapshot);
+        try {
+            return task.call();
+        } finally {
+            installed.close();
+        }
+    }
+
+    /**
+     * Returns a task that runs with the context of the current thread, as captured now.
+     */
+    public static Runnable wrap(Runnable task) {
+        Snapshot snapshot = capture();
+        return () -> runWith(snapshot, task);
+    }
+
+    /**
+     * Returns a task that is called with the context of the current thread, as captured now.
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Snapshot snapshot = capture();
+        return () -> callWith(snapshot, task);
+    }
+
+    /**
+     * Returns an executor that runs each task with the context of the thread that submitted it.
+     */
+    public static Executor wrap(Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+
+    /**
+     * Like {@link CompletableFuture#runAsync(Runnable, Executor)}, running the task with the context of the current thread.
+     */
+    public static CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(wrap(task), executor);
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, calling the supplier with the context of the current thread.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        Snapshot snapshot = capture();
+        return CompletableFuture.supplyAsync(() -> {
+            Installed installed = new Installed(snapshot);
+            try {
+                return supplier.get();
+            } finally {
+                installed.close();
+            }
+        }, executor);
+    }
+
+    private static void putMdc(Key<String> key, String value) {
+        if (value == null) {
+            MDC.remove(key.getName());
+        } else {
+            MDC.put(key.getName(), value);
+        }
+    }
+
+    /**
+     * A snapshot installed as the context of the current thread; closing it restores the previous context and MDC values.
+     */
+    private static final class Installed implements AutoCloseable {
+
+        private final Map<String, Object> previous;
+        private final String previousUniqueId;
+        private final String previousAppKey;
+
+        private Installed(Snapshot snapshot) {
+            previous = CONTEXT.get();
+            previousUniqueId = MDC.get(KEY_THREAD_UNIQUE_ID.getName());
+            previousAppKey = MDC.get(KEY_THREAD_APP_KEY.getName());
+            // the task gets its own copy, so its changes do not reach the snapshot
+            CONTEXT.set(new HashMap<>(snapshot.values));
+            putMdc(KEY_THREAD_UNIQUE_ID, snapshot.get(KEY_THREAD_UNIQUE_ID));
+            putMdc(KEY_THREAD_APP_KEY, snapshot.get(KEY_THREAD_APP_KEY));
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CONTEXT.remove();
+            } else {
+                CONTEXT.set(previous);
+            }
+            putMdc(KEY_THREAD_UNIQUE_ID, previousUniqueId);
+            putMdc(KEY_THREAD_APP_KEY, previousAppKey);
+        }
+    }
+
+    /**
+     * Start and phases of a request. Tasks running with a snapshot of the context share it, so marks are synchronized.
+     */
+    private static final class Timing {
+
+        private final long start;
+        private long last;
+        private final Map<String, Long> phases = new LinkedHashMap<>();
+
+        private Timing(long start) {
+            this.start = start;
+            this.last = start;
+        }
+
+        private synchronized long mark(String phase, long now) {
+            long nanos = now - last;
+            last = now;
+            phases.merge(phase, nanos, Long::sum);
+            return nanos;
+        }
+
+        private synchronized Map<String, Long> phaseTimesMillis() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            phases.forEach((phase, nanos) -> result.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos)));
+            return result;
+        }
+    }
+
+    private static final class LatencyStats implements LatencyStatsMXBean {
+
+        @Override
+        public String[] getPhases() {
+            return LATENCIES.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public long getCount(String phase) {
+            LatencyHistogram histogram = find(phase);
+            return (histogram != null) ? histogram.getCount() : 0;
+        }
+
+        @Override
+        public double getMeanMillis(String phase) {
+            LatencyHistogram histogram = find(phase);
+            return (histogram != null) ? histogram.getMeanMillis() : 0;
+        }
+
+        @Override
+        public double getPercentileMillis(String phase, double percentile) {
+            LatencyHistogram histogram = find(phase);
+            return (histogram != null) ? histogram.getPercentileMillis(percentile) : 0;
+        }
+
+        @Override
+        public double getMaxMillis(String phase) {
+            LatencyHistogram histogram = find(phase);
+            return (histogram != null) ? histogram.getMaxMillis() : 0;
+        }
+
+        /**
+         * Looks a phase up without adding it, so querying unknown phases from a JMX console does not grow the phases.
+         */
+        private static LatencyHistogram find(String phase) {
+            return (phase != null) ? LATENCIES.get(phase) : null;
+        }
+
+        @Override
+        public String dump() {
+            StringBuilder dump = new StringBuilder();
+            for (LatencyHistogram histogram : LATENCIES.values()) {
+                dump.append(histogram).append('\n');
+            }
+            return dump.toString();
+        }
+
+        @Override
+        public void reset() {
+            LATENCIES.values().forEach(LatencyHistogram::reset);
+        }
+    }
+
+    /**
+     * Immutable copy of the context of a thread.
+     *
+     * @see ThreadContext#capture()
+     */
+    public static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap());
+
+        private final Map<String, Object> values;
+
+        private Snapshot(Map<String, Object> values) {
+            this.values = values;
+        }
+
+        public <T> T get(Key<T> key) {
+            return key.type.cast(values.get(key.name));
+        }
+
+        public Object getObject(String objectName) {
+            return values.get(objectName);
+        }
+    }
+
+    /**
+     * Generates the unique ids of the contexts. Called by every {@link ThreadContext#initContext()}, so it must be thread safe and fast.
+     */
+    @FunctionalInterface
+    public interface IdGenerator {
+
+        String nextId();
+    }
+
+    /**
+     * Typed key of a value of the context.
+     *
+     * @param <T>
+     *            the type of the value
+     */
+    public static final class Key<T> {
+
+        private final String name;
+        private final Class<T> type;
+
+        private Key(String name, Class<T> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public static <T> Key<T> of(String name, Class<T> type) {
+            return new Key<>(name, type);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+    }
+
+    /**
+     * Removes the context of the thread that opened it when closed.
+     *
+     * @see ThreadContext#openContext()
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private Scope() {
+        }
+
+        @Override
+        public void close() {
+            destroyContext();
         }
     }
 }
@@ -0,0 +1,67 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Default generator of the unique id of a {@link ThreadContext}: a time ordered 128-bit id in the style of ULID, made of the 48-bit epoch milliseconds and 80 random bits drawn from
+ * {@link ThreadLocalRandom}, so generating ids takes no lock. The id is written in Crockford's base 32 as 10 time characters, an underscore and 16 random characters, e.g.
+ * {@code 01JAB3C4D5_7ZK2M9QH4XW8TNRP}, so ids sort by creation time to the millisecond: the random part is not monotonic, so ids created in the same millisecond sort in any
+ * order.
+ */
+public final class TimeOrderedIdGenerator implements ThreadContext.IdGenerator {
+
+    private static final byte[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes(StandardCharsets.US_ASCII);
+    private static final int TIME_CHARS = 10;
+    private static final int RANDOM_CHARS = 16;
+    static final int LENGTH = TIME_CHARS + 1 + RANDOM_CHARS;
+    // reused by each thread, so an id only allocates its String
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> {
+        byte[] buffer = new byte[LENGTH];
+        buffer[TIME_CHARS] = '_';
+        return buffer;
+    });
+
+    @Override
+    public String nextId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        byte[] buffer = BUFFER.get();
+        encode(buffer, 0, System.currentTimeMillis(), TIME_CHARS);
+        encode(buffer, TIME_CHARS + 1, random.nextLong(), RANDOM_CHARS / 2);
+        encode(buffer, TIME_CHARS + 1 + RANDOM_CHARS / 2, random.nextLong(), RANDOM_CHARS / 2);
+        return new String(buffer, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the lowest {@code 5 * chars} bits of a value, most significant first.
+     */
+    private static void encode(byte[] buffer, int offset, long value, int chars) {
+        for (int i = offset + chars - 1; i >= offset; i--) {
+            buffer[i] = ALPHABET[(int) (value & 0x1f)];
+            value >>>= 5;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import lombok.Setter;
 @Getter
 public class ChangeAudit {
 
+    private String property;
     private ChangeAction action;
     private String value;
     private String old;
@@ -42,4 +43,9 @@ public class ChangeAudit {
         this.value = value;
         this.old = old;
     }
+
+    public ChangeAudit(String property, ChangeAction action, String old, String value) {
+        this(action, old, value);
+        this.property = property;
+    }
 }
@@ -0,0 +1,88 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.change;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+/**
+ * Result of comparing two lists in a batch: the change of each element, in the order of the compared lists, and the number of elements per change action.
+ */
+public class ChangeBatch<T extends Object> implements Iterable<Comparator<T>> {
+
+    private final List<Comparator<T>> results;
+    private final Map<ChangeAction, Integer> counts;
+
+    public ChangeBatch(List<Comparator<T>> results) {
+        this.results = Collections.unmodifiableList(results);
+        int[] count = new int[ChangeAction.values().length];
+        for (Comparator<T> result : results) {
+            count[result.getAction().ordinal()]++;
+        }
+        Map<ChangeAction, Integer> map = new EnumMap<>(ChangeAction.class);
+        for (ChangeAction action : ChangeAction.values()) {
+            map.put(action, count[action.ordinal()]);
+        }
+        this.counts = Collections.unmodifiableMap(map);
+    }
+
+    public List<Comparator<T>> getResults() {
+        return results;
+    }
+
+    public Map<ChangeAction, Integer> getCounts() {
+        return counts;
+    }
+
+    public int getCount(ChangeAction action) {
+        return counts.get(action);
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public boolean hasChanges() {
+        return getCount(ChangeAction.NONE) != results.size();
+    }
+
+    public Stream<Comparator<T>> stream() {
+        return results.stream();
+    }
+
+    @Override
+    public Iterator<Comparator<T>> iterator() {
+        return results.iterator();
+    }
+
+    @Override
+    public Spliterator<Comparator<T>> spliterator() {
+        return results.spliterator();
+    }
+}
@@ -0,0 +1,502 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tree shared by many threads, e.g. a catalog displayed to every user of an application.
+ *
+ * <p>
+ * Readers use an immutable snapshot of the tree without locking. Writers publish a new snapshot, one writer at a time. {@link #add(NodeHash)} and {@link #remove(String)} copy only the
+ * changed nodes and the path to them in a hash trie, sharing the rest with the previous snapshot; {@link #update(Consumer)} copies the whole tree, for changes in bulk.
+ *
+ * <p>
+ * Expansion and selection belong to each {@link Session}, kept in bit sets indexed by node ids, so the memory of a session does not depend on the data of the tree. The ids of
+ * removed nodes are given to new nodes, after the sessions forget their state. The log of removed ids is bounded: a session idle for longer than the log covers starts over with an
+ * empty state.
+ *
+ * <p>
+ * Only the nodes connected to the root are kept.
+ */
+public class ConcurrentTreeHash {
+
+    // bounds of the log of released ids that idle sessions may still have to replay
+    static final int MAX_LOGGED_RELEASES = 1024;
+    static final int MAX_LOGGED_IDS = 64 * 1024;
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+    // ids of removed nodes, given again to new nodes; guarded by writeLock
+    private final BitSet freeIds = new BitSet();
+    private int nextId;
+    // first release still linked to the newer ones, and the size of the log from it; guarded by writeLock
+    private Release oldestRelease;
+    private int loggedReleases;
+    private int loggedIds;
+
+    public ConcurrentTreeHash() {
+        this(new TreeHash());
+    }
+
+    public ConcurrentTreeHash(TreeHash tree) {
+        this.oldestRelease = new Release(new int[0]);
+        this.loggedReleases = 1;
+        this.snapshot = new Snapshot(0, fromTree(tree, null, new ArrayList<>()), oldestRelease);
+    }
+
+    /**
+     * Applies changes to a copy of the whole tree and publishes the result. Readers keep seeing the previous version until the changes are complete. Prefer {@link #add(NodeHash)} and
+     * {@link #remove(String)} for a few nodes.
+     *
+     * @param changes
+     *            changes the copy of the tree, e.g. {@code tree -> tree.bulkLoad(rows)}
+     */
+    public void update(Consumer<TreeHash> changes) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            TreeHash tree = current.toTreeHash();
+            changes.accept(tree);
+            List<Integer> released = new ArrayList<>();
+            publish(current, fromTree(tree, current, released), released);
+        }
+    }
+
+    /**
+     * Adds a copy of a node, as a leaf. A node with the same key is replaced and its subtree removed: unlike {@link TreeHash#add(NodeHash)}, which keeps the descendants of the
+     * replaced node as nodes not connected to the root, this tree only keeps connected nodes. A node whose parent is not in the tree is ignored.
+     */
+    public void add(NodeHash node) {
+        synchronized (writeLock) {
+            if (TreeHash.KEY_ROOT.equals(node.getKey())) {
+                return;
+            }
+            Snapshot current = snapshot;
+            List<Integer> released = new ArrayList<>();
+            HashTrie<Entry> entries = removeSubtree(current.entries, node.getKey(), released);
+            Entry parent = entries.get(node.getKeyParent());
+            if (parent == null) {
+                return;
+            }
+            Entry entry = new Entry(node.getKey(), node.getKeyParent(), node.getData(), node.getType(), node.isSelectable(), new String[0], allocateId());
+            publish(current, entries.put(parent.key, parent.withChild(entry.key)).put(entry.key, entry), released);
+        }
+    }
+
+    /**
+     * Removes a node and its subtree.
+     */
+    public void remove(String keyNode) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (TreeHash.KEY_ROOT.equals(keyNode) || !current.entries.containsKey(keyNode)) {
+                return;
+            }
+            List<Integer> released = new ArrayList<>();
+            publish(current, removeSubtree(current.entries, keyNode, released), released);
+        }
+    }
+
+    /**
+     * Returns the version of the tree, incremented by each update.
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Returns the number of nodes, the root excluded.
+     */
+    public int size() {
+        return snapshot.entries.size() - 1;
+    }
+
+    public boolean contains(String key) {
+        return !TreeHash.KEY_ROOT.equals(key) && snapshot.entries.containsKey(key);
+    }
+
+    public Object getData(String key) {
+        Entry entry = snapshot.entries.get(key);
+        return (entry != null) ? entry.data : null;
+    }
+
+    public String getKeyParent(String key) {
+        Entry entry = snapshot.entries.get(key);
+        return (entry != null) ? entry.keyParent : null;
+    }
+
+    public List<String> getKeyChildren(String key) {
+        Entry entry = snapshot.entries.get(key);
+        return (entry != null) ? Collections.unmodifiableList(Arrays.asList(entry.children)) : Collections.emptyList();
+    }
+
+    /**
+     * Creates the expansion and selection state of a user. A session is meant to be used by one thread at a time.
+     */
+    public Session newSession() {
+        return new Session(snapshot.release);
+    }
+
+    private int allocateId() {
+        int id = freeIds.nextSetBit(0);
+        if (id < 0) {
+            return nextId++;
+        }
+        freeIds.clear(id);
+        return id;
+    }
+
+    /**
+     * Removes a node and its subtree from the entries, and the node from the children of its parent.
+     */
+    private HashTrie<Entry> removeSubtree(HashTrie<Entry> entries, String key, List<Integer> released) {
+        Entry entry = entries.get(key);
+        if (entry == null || TreeHash.KEY_ROOT.equals(key)) {
+            return entries;
+        }
+        Entry parent = entries.get(entry.keyParent);
+        if (parent != null) {
+            entries = entries.put(parent.key, parent.withoutChild(key));
+        }
+        Deque<Entry> stack = new ArrayDeque<>();
+        stack.push(entry);
+        while (!stack.isEmpty()) {
+            Entry removed = stack.pop();
+            entries = entries.remove(removed.key);
+            released.add(removed.id);
+            for (String child : removed.children) {
+                Entry childEntry = entries.get(child);
+                if (childEntry != null) {
+                    stack.push(childEntry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Publishes a new version of the tree. The ids of the removed nodes are freed only once the snapshot lists them, so the sessions forget their state before they see a new node with
+     * the id.
+     */
+    private void publish(Snapshot current, HashTrie<Entry> entries, List<Integer> released) {
+        int[] ids = new int[released.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = released.get(i);
+        }
+        Release release = new Release(ids);
+        current.release.next = release;
+        snapshot = new Snapshot(current.version + 1, entries, release);
+        for (int id : ids) {
+            freeIds.set(id);
+        }
+
+        loggedReleases++;
+        loggedIds += ids.length;
+        while (oldestRelease != release && (loggedReleases > MAX_LOGGED_RELEASES || loggedIds > MAX_LOGGED_IDS)) {
+            // unlinked, so a session left on it no longer keeps the newer releases in memory; it starts over when it reads again
+            Release dropped = oldestRelease;
+            oldestRelease = dropped.next;
+            dropped.next = null;
+            loggedReleases--;
+            loggedIds -= dropped.ids.length;
+        }
+    }
+
+    /**
+     * Creates the entries of the nodes connected to the root of a tree. The nodes keep the ids they had in the previous snapshot, so the sessions keep their state; new nodes get free
+     * ids.
+     */
+    private HashTrie<Entry> fromTree(TreeHash tree, Snapshot previous, List<Integer> released) {
+        HashTrie<Entry> entries = HashTrie.empty();
+        NodeHash root = tree.getNodeHash(TreeHash.KEY_ROOT);
+        List<NodeHash> nodes = new ArrayList<>();
+        if (root != null) {
+            nodes.add(root);
+            nodes.addAll(tree.getNodeList());
+        }
+        for (NodeHash node : nodes) {
+            Entry previousEntry = (previous != null) ? previous.entries.get(node.getKey()) : null;
+            entries = entries.put(node.getKey(), new Entry(node, (previousEntry != null) ? previousEntry.id : allocateId()));
+        }
+        if (previous != null) {
+            Deque<Entry> stack = new ArrayDeque<>();
+            stack.push(previous.entries.get(TreeHash.KEY_ROOT));
+            while (!stack.isEmpty()) {
+                Entry entry = stack.pop();
+                if (!entries.containsKey(entry.key)) {
+                    released.add(entry.id);
+                }
+                for (String child : entry.children) {
+                    Entry childEntry = previous.entries.get(child);
+                    if (childEntry != null) {
+                        stack.push(childEntry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Immutable node of a snapshot, shared by the snapshots it did not change in.
+     */
+    private static final class Entry {
+
+        private final String key;
+        private final String keyParent;
+        private final Object data;
+        private final String type;
+        private final boolean selectable;
+        private final String[] children;
+        private final int id;
+
+        private Entry(String key, String keyParent, Object data, String type, boolean selectable, String[] children, int id) {
+            this.key = key;
+            this.keyParent = keyParent;
+            this.data = data;
+            this.type = type;
+            this.selectable = selectable;
+            this.children = children;
+            this.id = id;
+        }
+
+        private Entry(NodeHash node, int id) {
+            this(node.getKey(), node.getKeyParent(), node.getData(), node.getType(), node.isSelectable(), node.getKeyChildren().toArray(new String[0]), id);
+        }
+
+        private Entry withChild(String child) {
+            String[] newChildren = Arrays.copyOf(children, children.length + 1);
+            newChildren[children.length] = child;
+            return new Entry(key, keyParent, data, type, selectable, newChildren, id);
+        }
+
+        private Entry withoutChild(String child) {
+            List<String> newChildren = new ArrayList<>(Arrays.asList(children));
+            newChildren.remove(child);
+            return new Entry(key, keyParent, data, type, selectable, newChildren.toArray(new String[0]), id);
+        }
+    }
+
+    /**
+     * Ids released by the update that published a snapshot, linked to the release of the next update, so a session can catch up from the last snapshot it used. The link is cleared
+     * when the release falls out of the log.
+     */
+    private static final class Release {
+
+        private final int[] ids;
+        private volatile Release next;
+
+        private Release(int[] ids) {
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Immutable version of the tree, including its root.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final HashTrie<Entry> entries;
+        private final Release release;
+
+        private Snapshot(long version, HashTrie<Entry> entries, Release release) {
+            this.version = version;
+            this.entries = entries;
+            this.release = release;
+        }
+
+        private TreeHash toTreeHash() {
+            List<NodeHash> nodes = new ArrayList<>(entries.size());
+            Deque<Entry> stack = new ArrayDeque<>();
+            stack.push(entries.get(TreeHash.KEY_ROOT));
+            while (!stack.isEmpty()) {
+                Entry entry = stack.pop();
+                if (!TreeHash.KEY_ROOT.equals(entry.key)) {
+                    NodeHash node = new NodeHash(entry.key, entry.data, entry.keyParent, entry.type);
+                    node.setSelectable(entry.selectable);
+                    nodes.add(node);
+                }
+                for (int i = entry.children.length - 1; i >= 0; i--) {
+                    Entry child = entries.get(entry.children[i]);
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+            TreeHash tree = new TreeHash();
+            tree.bulkLoad(nodes);
+            return tree;
+        }
+    }
+
+    /**
+     * Expansion and selection state of a user over the shared tree. The state of removed nodes is cleared when the session next reads the tree; a session that did not read the tree
+     * while {@link #MAX_LOGGED_RELEASES} updates were published clears all its state instead.
+     */
+    public final class Session {
+
+        private final BitSet expanded = new BitSet();
+        private final BitSet selected = new BitSet();
+        private Release synced;
+
+        private Session(Release synced) {
+            this.synced = synced;
+        }
+
+        /**
+         * Returns the current snapshot, after forgetting the state of the nodes removed since the last call.
+         */
+        private Snapshot current() {
+            Snapshot current = snapshot;
+            while (synced != current.release) {
+                Release next = synced.next;
+                if (next == null) {
+                    // the releases since the last read fell out of the log: any id may have been given to another node
+                    expanded.clear();
+                    selected.clear();
+                    synced = current.release;
+                    break;
+                }
+                synced = next;
+                for (int id : synced.ids) {
+                    expanded.clear(id);
+                    selected.clear(id);
+                }
+            }
+            return current;
+        }
+
+        public boolean isExpanded(String key) {
+            Entry entry = current().entries.get(key);
+            return entry != null && expanded.get(entry.id);
+        }
+
+        public void setExpanded(String key, boolean value) {
+            Entry entry = current().entries.get(key);
+            if (entry != null) {
+                expanded.set(entry.id, value);
+            }
+        }
+
+        public boolean isSelected(String key) {
+            Entry entry = current().entries.get(key);
+            return entry != null && selected.get(entry.id);
+        }
+
+        public void setSelected(String key, boolean value) {
+            Entry entry = current().entries.get(key);
+            if (entry != null) {
+                selected.set(entry.id, value);
+            }
+        }
+
+        public void propagateCheckDown(String keyNode) {
+            setSelectedDown(keyNode, true);
+        }
+
+        public void propagateUncheckDown(String keyNode) {
+            setSelectedDown(keyNode, false);
+        }
+
+        private void setSelectedDown(String keyNode, boolean value) {
+            Snapshot current = current();
+            Entry start = current.entries.get(keyNode);
+            if (start == null) {
+                return;
+            }
+            Deque<Entry> stack = new ArrayDeque<>();
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                Entry entry = stack.pop();
+                if (entry.selectable && !TreeHash.KEY_ROOT.equals(entry.key)) {
+                    selected.set(entry.id, value);
+                }
+                for (String child : entry.children) {
+                    Entry childEntry = current.entries.get(child);
+                    if (childEntry != null) {
+                        stack.push(childEntry);
+                    }
+                }
+            }
+        }
+
+        public void propagateCheckUp(String keyNode) {
+            Snapshot current = current();
+            Entry entry = current.entries.get(keyNode);
+            // bounded in case the parent keys form a cycle
+            for (int i = 0; entry != null && !TreeHash.KEY_ROOT.equals(entry.key) && i < current.entries.size(); i++) {
+                if (entry.selectable) {
+                    selected.set(entry.id);
+                }
+                entry = current.entries.get(entry.keyParent);
+            }
+        }
+
+        /**
+         * Returns the nodes whose ancestors are expanded in this session, in pre-order. The nodes are copies with the state of this session, created only for the visible nodes.
+         */
+        public List<NodeHash> getNodeVisibleList() {
+            Snapshot current = current();
+            List<NodeHash> visible = new ArrayList<>();
+            // pre-order with an explicit stack of child iterators: the depth of a child is given by the stack size
+            Deque<Iterator<String>> stack = new ArrayDeque<>();
+            stack.push(Arrays.asList(current.entries.get(TreeHash.KEY_ROOT).children).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<String> children = stack.peek();
+                if (!children.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Entry entry = current.entries.get(children.next());
+                if (entry == null) {
+                    continue;
+                }
+                boolean entryExpanded = expanded.get(entry.id);
+                NodeHash node = new NodeHash(entry.key, entry.data, entry.keyParent, entry.type);
+                for (String child : entry.children) {
+                    node.addKeyChild(child);
+                }
+                node.setDepth(stack.size() - 1);
+                node.setExpanded(entryExpanded);
+                node.setSelectable(entry.selectable);
+                node.setSelected(selected.get(entry.id));
+                visible.add(node);
+                // the descendants of a collapsed node are skipped
+                if (entryExpanded) {
+                    stack.push(Arrays.asList(entry.children).iterator());
+                }
+            }
+            return visible;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map of string keys, as a hash array mapped trie: a change copies only the path from the root to the changed key, about log32(n) small arrays, and shares the rest with
+ * the previous map.
+ *
+ * @param <V>
+ *            the type of the values
+ */
+final class HashTrie<V> {
+
+    private static final int BITS = 5;
+    private static final HashTrie<?> EMPTY = new HashTrie<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> HashTrie<V> empty() {
+        return (HashTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the key mapped to the value, which cannot be null.
+     */
+    HashTrie<V> put(String key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(key, hash(key), 0, value, added);
+        return (newRoot == root) ? this : new HashTrie<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    HashTrie<V> remove(String key) {
+        Node newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new HashTrie<>((newRoot != null) ? newRoot : Node.EMPTY, size - 1);
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Node of the trie: for each bit set in the bitmap, a key and its value, or null and the child node for the keys with those hash bits. Past the last bits of the hash, a node
+     * holds the colliding keys in a plain array.
+     */
+    private static final class Node {
+
+        private static final Node EMPTY = new Node(0, new Object[0], false);
+
+        private final int bitmap;
+        private final Object[] array;
+        private final boolean collision;
+
+        private Node(int bitmap, Object[] array, boolean collision) {
+            this.bitmap = bitmap;
+            this.array = array;
+            this.collision = collision;
+        }
+
+        private Object get(String key, int hash, int shift) {
+            if (collision) {
+                int i = indexOfKey(key);
+                return (i >= 0) ? array[i + 1] : null;
+            }
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).get(key, hash, shift + BITS);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        private Node put(String key, int hash, int shift, Object value, boolean[] added) {
+            if (collision) {
+                int i = indexOfKey(key);
+                if (i >= 0) {
+                    return (array[i + 1] == value) ? this : new Node(0, with(array, i + 1, value), true);
+                }
+                added[0] = true;
+                Object[] newArray = Arrays.copyOf(array, array.length + 2);
+                newArray[array.length] = key;
+                newArray[array.length + 1] = value;
+                return new Node(0, newArray, true);
+            }
+            int bit = bit(hash, shift);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new Node(bitmap | bit, newArray, false);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(key, hash, shift + BITS, value, added);
+                return (child == v) ? this : new Node(bitmap, with(array, i + 1, child), false);
+            } else if (key.equals(k)) {
+                return (v == value) ? this : new Node(bitmap, with(array, i + 1, value), false);
+            }
+            added[0] = true;
+            Node child = pair(shift + BITS, (String) k, v, key, hash, value);
+            Object[] newArray = with(array, i, null);
+            newArray[i + 1] = child;
+            return new Node(bitmap, newArray, false);
+        }
+
+        /**
+         * Returns the node without the key, null if it becomes empty.
+         */
+        private Node remove(String key, int hash, int shift) {
+            if (collision) {
+                int i = indexOfKey(key);
+                if (i < 0) {
+                    return this;
+                }
+                return (array.length == 2) ? null : new Node(0, without(array, i), true);
+            }
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                Node child = ((Node) array[i + 1]).remove(key, hash, shift + BITS);
+                if (child == array[i + 1]) {
+                    return this;
+                } else if (child != null) {
+                    return new Node(bitmap, with(array, i + 1, child), false);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            return (bitmap == bit) ? null : new Node(bitmap ^ bit, without(array, i), false);
+        }
+
+        private int indexOfKey(String key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static Node pair(int shift, String key1, Object value1, String key2, int hash2, Object value2) {
+            if (shift >= Integer.SIZE) {
+                return new Node(0, new Object[] {key1, value1, key2, value2}, true);
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.put(key1, hash(key1), shift, value1, added).put(key2, hash2, shift, value2, added);
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 0x1f);
+        }
+
+        private static Object[] with(Object[] array, int i, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = value;
+            return copy;
+        }
+
+        private static Object[] without(Object[] array, int i) {
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return copy;
+        }
+    }
+}
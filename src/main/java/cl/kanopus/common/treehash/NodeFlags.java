@@ -0,0 +1,212 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Flags of the nodes of a {@link TreeHash}, held in bit sets indexed by a dense id given to each node when it is added to the tree.
+ *
+ * <p>
+ * When the ids follow the pre-order of the tree, a subtree is a range of ids, so a whole subtree can be checked or unchecked with a few word operations.
+ */
+final class NodeFlags {
+
+    static final int SELECTED = 0;
+    static final int ORIGINAL_SELECTED = 1;
+    static final int SELECTABLE = 2;
+    static final int EXPANDED = 3;
+    static final int HIGH_LIGHT = 4;
+    static final int VISIBLE_IN_SEARCH = 5;
+    private static final int COUNT = 6;
+
+    private BitSet[] bits = newBits(0);
+    // node by id, null for the free ids
+    private List<NodeHash> nodes = new ArrayList<>();
+    private BitSet free = new BitSet();
+    // index after the last descendant of each id, valid while the ids follow the pre-order; -1 for nodes not connected to the root
+    private int[] ends;
+
+    boolean get(int id, int flag) {
+        return bits[flag].get(id);
+    }
+
+    void set(int id, int flag, boolean value) {
+        bits[flag].set(id, value);
+    }
+
+    /**
+     * Gives an id to a node, reusing the ids of removed nodes first.
+     */
+    int allocate(NodeHash node) {
+        ends = null;
+        int id = free.nextSetBit(0);
+        if (id < 0) {
+            id = nodes.size();
+            nodes.add(node);
+        } else {
+            free.clear(id);
+            nodes.set(id, node);
+        }
+        return id;
+    }
+
+    void release(int id) {
+        ends = null;
+        for (BitSet flag : bits) {
+            flag.clear(id);
+        }
+        nodes.set(id, null);
+        free.set(id);
+    }
+
+    /**
+     * Forgets the pre-order of the ids, after the children of a node changed.
+     */
+    void invalidateOrder() {
+        ends = null;
+    }
+
+    /**
+     * Returns whether the ids follow the pre-order of the tree.
+     */
+    boolean isOrdered() {
+        return ends != null;
+    }
+
+    /**
+     * Returns the id after the last descendant of a node, or -1 if the ids do not follow the pre-order of the tree.
+     */
+    int subtreeEnd(int id) {
+        return (ends != null) ? ends[id] : -1;
+    }
+
+    /**
+     * Selects or unselects the selectable nodes in a range of ids.
+     */
+    void setSelected(int from, int to, boolean value) {
+        BitSet selectable = bits[SELECTABLE];
+        if (selectable.nextClearBit(from) >= to) {
+            bits[SELECTED].set(from, to, value);
+            return;
+        }
+        BitSet range = new BitSet(to);
+        range.set(from, to);
+        range.and(selectable);
+        if (value) {
+            bits[SELECTED].or(range);
+        } else {
+            bits[SELECTED].andNot(range);
+        }
+    }
+
+    /**
+     * Returns the nodes whose selection differs from their original selection, in the order of their ids.
+     */
+    List<NodeHash> selectionChanges() {
+        BitSet changed = (BitSet) bits[SELECTED].clone();
+        changed.xor(bits[ORIGINAL_SELECTED]);
+        List<NodeHash> result = new ArrayList<>(changed.cardinality());
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            result.add(nodes.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Gives new ids to the nodes following the pre-order of the tree, so subtrees become ranges of ids. The nodes not connected to the root keep the ids after them.
+     *
+     * @param root
+     *            the root of the tree
+     * @param preOrder
+     *            the other connected nodes in pre-order, with their depths up to date
+     */
+    void renumber(NodeHash root, List<NodeHash> preOrder) {
+        int size = nodes.size();
+        int[] newIds = new int[size];
+        Arrays.fill(newIds, -1);
+        List<NodeHash> ordered = new ArrayList<>(size);
+        ordered.add(root);
+        ordered.addAll(preOrder);
+        for (int i = 0; i < ordered.size(); i++) {
+            NodeHash node = ordered.get(i);
+            if (node.id < 0 || node.id >= size || nodes.get(node.id) != node || newIds[node.id] >= 0) {
+                // not a node of this tree, the order cannot be trusted
+                return;
+            }
+            newIds[node.id] = i;
+        }
+        int connected = ordered.size();
+        for (NodeHash node : nodes) {
+            if (node != null && newIds[node.id] < 0) {
+                newIds[node.id] = ordered.size();
+                ordered.add(node);
+            }
+        }
+
+        BitSet[] newBits = newBits(ordered.size());
+        for (int flag = 0; flag < COUNT; flag++) {
+            BitSet old = bits[flag];
+            for (int id = old.nextSetBit(0); id >= 0; id = old.nextSetBit(id + 1)) {
+                newBits[flag].set(newIds[id]);
+            }
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).id = i;
+        }
+
+        // the descendants of a node are the following nodes with a greater depth
+        int[] newEnds = new int[ordered.size()];
+        Arrays.fill(newEnds, connected, newEnds.length, -1);
+        newEnds[0] = connected;
+        int[] stack = new int[connected];
+        int top = 0;
+        for (int i = 1; i < connected; i++) {
+            int depth = ordered.get(i).getDepth();
+            while (top > 0 && ordered.get(stack[top - 1]).getDepth() >= depth) {
+                newEnds[stack[--top]] = i;
+            }
+            stack[top++] = i;
+        }
+        while (top > 0) {
+            newEnds[stack[--top]] = connected;
+        }
+
+        bits = newBits;
+        nodes = ordered;
+        free = new BitSet();
+        ends = newEnds;
+    }
+
+    private static BitSet[] newBits(int size) {
+        BitSet[] result = new BitSet[COUNT];
+        for (int flag = 0; flag < COUNT; flag++) {
+            result[flag] = new BitSet(size);
+        }
+        return result;
+    }
+}
@@ -25,8 +25,13 @@ package cl.kanopus.common.treehash;
 
 import static cl.kanopus.common.treehash.TreeHash.KEY_ROOT;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 
 public class NodeHash {
 
@@ -42,7 +47,20 @@ public class NodeHash {
     private boolean highLight;
     private boolean visibleInSearch;
 
-    List<String> keyChildren = new ArrayList<>();
+    // insertion ordered, with constant time membership, insertion and removal
+    private final Set<String> keyChildren = new LinkedHashSet<>();
+    private final List<String> keyChildrenView = new KeyChildrenView();
+    private String[] keyChildrenArray;
+    // tree that contains this node, notified when it is expanded or collapsed; while set, the flags are held by the tree under the id
+    TreeHash tree;
+    int id = -1;
+    // cached rows of this node in the lists of the tree and sizes of its subtree there, see NodeRows
+    int row = -1;
+    int rowStamp;
+    int visibleRow = -1;
+    int visibleRowStamp;
+    int rows;
+    int visibleRows;
 
     public NodeHash(String key, Object data, String type) {
         this.key = key;
@@ -83,11 +101,16 @@ public class NodeHash {
     }
 
     public boolean isExpanded() {
-        return expanded;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.EXPANDED) : expanded;
     }
 
     public void setExpanded(boolean expanded) {
-        this.expanded = expanded;
+        if (tree == null) {
+            this.expanded = expanded;
+        } else if (isExpanded() != expanded) {
+            tree.flags.set(id, NodeFlags.EXPANDED, expanded);
+            tree.expandedChanged(this);
+        }
     }
 
     public String getType() {
@@ -103,27 +126,39 @@ public class NodeHash {
     }
 
     public boolean isSelected() {
-        return selected;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.SELECTED) : selected;
     }
 
     public void setSelected(boolean selected) {
-        this.selected = selected;
+        if (tree != null) {
+            tree.flags.set(id, NodeFlags.SELECTED, selected);
+        } else {
+            this.selected = selected;
+        }
     }
 
     public boolean isOriginalSelected() {
-        return originalSelected;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.ORIGINAL_SELECTED) : originalSelected;
     }
 
     public void setOriginalSelected(boolean originalSelected) {
-        this.originalSelected = originalSelected;
+        if (tree != null) {
+            tree.flags.set(id, NodeFlags.ORIGINAL_SELECTED, originalSelected);
+        } else {
+            this.originalSelected = originalSelected;
+        }
     }
 
     public boolean isSelectable() {
-        return selectable;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.SELECTABLE) : selectable;
     }
 
     public void setSelectable(boolean selectable) {
-        this.selectable = selectable;
+        if (tree != null) {
+            tree.flags.set(id, NodeFlags.SELECTABLE, selectable);
+        } else {
+            this.selectable = selectable;
+        }
     }
 
     public int getDepth() {
@@ -135,22 +170,114 @@ public class NodeHash {
     }
 
     public boolean isHighLight() {
-        return highLight;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.HIGH_LIGHT) : highLight;
     }
 
     public void setHighLight(boolean highLight) {
-        this.highLight = highLight;
+        if (tree != null) {
+            tree.flags.set(id, NodeFlags.HIGH_LIGHT, highLight);
+        } else {
+            this.highLight = highLight;
+        }
     }
 
     public boolean isVisibleInSearch() {
-        return visibleInSearch;
+        return (tree != null) ? tree.flags.get(id, NodeFlags.VISIBLE_IN_SEARCH) : visibleInSearch;
     }
 
     public void setVisibleInSearch(boolean visibleInSearch) {
-        this.visibleInSearch = visibleInSearch;
+        if (tree != null) {
+            tree.flags.set(id, NodeFlags.VISIBLE_IN_SEARCH, visibleInSearch);
+        } else {
+            this.visibleInSearch = visibleInSearch;
+        }
     }
 
+    /**
+     * Returns the keys of the children in insertion order, as a read-only view. {@code contains} takes constant time.
+     */
     public List<String> getKeyChildren() {
-        return keyChildren;
+        return keyChildrenView;
+    }
+
+    boolean addKeyChild(String key) {
+        keyChildrenArray = null;
+        return keyChildren.add(key);
+    }
+
+    boolean removeKeyChild(String key) {
+        keyChildrenArray = null;
+        return keyChildren.remove(key);
+    }
+
+    void clearKeyChildren() {
+        keyChildrenArray = null;
+        keyChildren.clear();
+    }
+
+    /**
+     * Moves the flags of this node into a tree, which gives it an id.
+     */
+    void attach(TreeHash tree) {
+        if (this.tree == tree) {
+            return;
+        }
+        detach();
+        NodeFlags flags = tree.flags;
+        id = flags.allocate(this);
+        flags.set(id, NodeFlags.SELECTED, selected);
+        flags.set(id, NodeFlags.ORIGINAL_SELECTED, originalSelected);
+        flags.set(id, NodeFlags.SELECTABLE, selectable);
+        flags.set(id, NodeFlags.EXPANDED, expanded);
+        flags.set(id, NodeFlags.HIGH_LIGHT, highLight);
+        flags.set(id, NodeFlags.VISIBLE_IN_SEARCH, visibleInSearch);
+        this.tree = tree;
+    }
+
+    /**
+     * Takes the flags of this node back from its tree, so it keeps them once removed.
+     */
+    void detach() {
+        if (tree == null) {
+            return;
+        }
+        NodeFlags flags = tree.flags;
+        selected = flags.get(id, NodeFlags.SELECTED);
+        originalSelected = flags.get(id, NodeFlags.ORIGINAL_SELECTED);
+        selectable = flags.get(id, NodeFlags.SELECTABLE);
+        expanded = flags.get(id, NodeFlags.EXPANDED);
+        highLight = flags.get(id, NodeFlags.HIGH_LIGHT);
+        visibleInSearch = flags.get(id, NodeFlags.VISIBLE_IN_SEARCH);
+        flags.release(id);
+        id = -1;
+        tree = null;
+    }
+
+    private final class KeyChildrenView extends AbstractList<String> implements RandomAccess {
+
+        @Override
+        public String get(int index) {
+            // positional access is rare, so the array is only built when needed
+            String[] array = keyChildrenArray;
+            if (array == null) {
+                keyChildrenArray = array = keyChildren.toArray(new String[0]);
+            }
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return keyChildren.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return keyChildren.contains(o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Collections.unmodifiableSet(keyChildren).iterator();
+        }
     }
 }
@@ -0,0 +1,260 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A flattened list of the nodes of a {@link TreeHash} in pre-order, patched in place as the tree changes.
+ *
+ * <p>
+ * Each node caches its row and the number of rows of its subtree, so the rows of a subtree are found without scanning the list. Instead of updating the rows of every node after an
+ * insertion or a removal, the shifts are logged, and a cached row is brought up to date by the shifts logged since it was set. The rows are all set again once the log grows to
+ * about the square root of the size of the list.
+ *
+ * <p>
+ * Once the list was handed out it is copied before the next change, so callers can iterate it while they change the tree.
+ */
+final class NodeRows {
+
+    private static final int MIN_SHIFTS = 32;
+
+    private final TreeHash tree;
+    private final boolean onlyVisible;
+    private List<NodeHash> rows;
+    // pairs of row and number of rows inserted there, negative for removed rows
+    private int[] shifts = new int[2 * MIN_SHIFTS];
+    private int shiftCount;
+    private boolean shared;
+
+    /**
+     * @param rows
+     *            the rows in pre-order, with their depths up to date
+     */
+    NodeRows(TreeHash tree, List<NodeHash> rows, boolean onlyVisible) {
+        this.tree = tree;
+        this.onlyVisible = onlyVisible;
+        this.rows = rows;
+        setSizes(0, rows.size());
+        setRows(0, rows.size());
+    }
+
+    /**
+     * Returns the rows as a read-only list that no longer changes.
+     */
+    List<NodeHash> view() {
+        shared = true;
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Returns the rows, which change with the tree.
+     */
+    List<NodeHash> rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the row of a node, or -1 if it is not in the list.
+     */
+    int indexOf(NodeHash node) {
+        int row = onlyVisible ? node.visibleRow : node.row;
+        int stamp = onlyVisible ? node.visibleRowStamp : node.rowStamp;
+        if (stamp > shiftCount) {
+            // set before the last time the rows were all set, so it is not in the list
+            return -1;
+        }
+        for (int i = stamp; i < shiftCount && row >= 0; i++) {
+            int at = shifts[2 * i];
+            int count = shifts[2 * i + 1];
+            if (count < 0 && row >= at && row < at - count) {
+                row = -1;
+            } else if (row >= at) {
+                row += count;
+            }
+        }
+        if (row < 0 || row >= rows.size() || rows.get(row) != node) {
+            return -1;
+        }
+        setRow(node, row);
+        return row;
+    }
+
+    /**
+     * Returns the row after the last descendant of the node at the given row.
+     */
+    int subtreeEnd(int index) {
+        return index + size(rows.get(index));
+    }
+
+    /**
+     * Inserts a new leaf at the end of the subtree of its parent, or at the end of the list for a child of the root.
+     */
+    void insertLeaf(NodeHash parent, NodeHash child) {
+        int index;
+        if (TreeHash.KEY_ROOT.equals(parent.getKey())) {
+            index = rows.size();
+            child.setDepth(0);
+        } else {
+            int parentRow = indexOf(parent);
+            if (parentRow < 0 || (onlyVisible && !parent.isExpanded())) {
+                return;
+            }
+            index = subtreeEnd(parentRow);
+            child.setDepth(parent.getDepth() + 1);
+        }
+        writable().add(index, child);
+        setSize(child, 1);
+        shift(index, 1);
+        setRow(child, index);
+        grow(parent, 1);
+    }
+
+    /**
+     * Inserts the rows of the children of an expanded node.
+     */
+    void insertChildren(NodeHash node, List<NodeHash> children) {
+        int index = indexOf(node);
+        if (index < 0 || children.isEmpty()) {
+            return;
+        }
+        writable().addAll(index + 1, children);
+        setSizes(index + 1, index + 1 + children.size());
+        if (shift(index + 1, children.size())) {
+            setRows(index + 1, index + 1 + children.size());
+        }
+        grow(node, children.size());
+    }
+
+    /**
+     * Removes the rows of the subtree of a node, the node included or not.
+     */
+    void removeSubtree(NodeHash node, boolean includeNode) {
+        int index = indexOf(node);
+        if (index < 0) {
+            return;
+        }
+        int from = includeNode ? index : index + 1;
+        int end = subtreeEnd(index);
+        if (from == end) {
+            return;
+        }
+        writable().subList(from, end).clear();
+        shift(from, from - end);
+        grow(includeNode ? tree.getNodeHash(node.getKeyParent()) : node, from - end);
+    }
+
+    private List<NodeHash> writable() {
+        if (shared) {
+            rows = new ArrayList<>(rows);
+            shared = false;
+        }
+        return rows;
+    }
+
+    /**
+     * Logs rows inserted or removed at a row, or sets all the rows again when the log is full.
+     *
+     * @return false if all the rows were set again
+     */
+    private boolean shift(int at, int count) {
+        if (at == rows.size() - Math.max(count, 0)) {
+            // at the end: no row moved
+            return true;
+        }
+        if (shiftCount >= Math.max(MIN_SHIFTS, (int) Math.sqrt(rows.size()))) {
+            shiftCount = 0;
+            setRows(0, rows.size());
+            return false;
+        }
+        if (2 * shiftCount + 2 > shifts.length) {
+            shifts = Arrays.copyOf(shifts, 2 * shifts.length);
+        }
+        shifts[2 * shiftCount] = at;
+        shifts[2 * shiftCount + 1] = count;
+        shiftCount++;
+        return true;
+    }
+
+    /**
+     * Adds rows to the subtree of a node and of its ancestors; bounded in case the parent keys form a cycle.
+     */
+    private void grow(NodeHash node, int delta) {
+        for (int i = 0; node != null && !TreeHash.KEY_ROOT.equals(node.getKey()) && i <= rows.size(); i++) {
+            setSize(node, size(node) + delta);
+            node = tree.getNodeHash(node.getKeyParent());
+        }
+    }
+
+    /**
+     * Computes the sizes of the subtrees of a range of whole subtrees: the descendants of a node are the following rows with a greater depth.
+     */
+    private void setSizes(int from, int to) {
+        int[] stack = new int[to - from];
+        int top = 0;
+        for (int i = from; i < to; i++) {
+            int depth = rows.get(i).getDepth();
+            while (top > 0 && rows.get(stack[top - 1]).getDepth() >= depth) {
+                int start = stack[--top];
+                setSize(rows.get(start), i - start);
+            }
+            stack[top++] = i;
+        }
+        while (top > 0) {
+            int start = stack[--top];
+            setSize(rows.get(start), to - start);
+        }
+    }
+
+    private void setRows(int from, int to) {
+        for (int i = from; i < to; i++) {
+            setRow(rows.get(i), i);
+        }
+    }
+
+    private void setRow(NodeHash node, int row) {
+        if (onlyVisible) {
+            node.visibleRow = row;
+            node.visibleRowStamp = shiftCount;
+        } else {
+            node.row = row;
+            node.rowStamp = shiftCount;
+        }
+    }
+
+    private int size(NodeHash node) {
+        return onlyVisible ? node.visibleRows : node.rows;
+    }
+
+    private void setSize(NodeHash node, int size) {
+        if (onlyVisible) {
+            node.visibleRows = size;
+        } else {
+            node.rows = size;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of the text of the nodes of a tree, by n-grams of {@link #MIN_GRAM} to {@link #MAX_GRAM} characters, so a substring query only verifies the nodes that contain its
+ * rarest n-gram. Single characters are not indexed, since almost every node would be listed under the common ones: a one character query verifies every text instead, most of which
+ * it matches anyway.
+ *
+ * <p>
+ * Texts are compared in lower case and without accents.
+ */
+final class NodeSearchIndex {
+
+    static final int MIN_GRAM = 2;
+    static final int MAX_GRAM = 3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Function<? super NodeHash, String> textExtractor;
+    // in indexing order, like the postings
+    private final Map<String, String> texts = new LinkedHashMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    NodeSearchIndex(Function<? super NodeHash, String> textExtractor) {
+        this.textExtractor = textExtractor;
+    }
+
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) > 0x7f) {
+                // only non ASCII text can have accents
+                return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lower;
+    }
+
+    void index(NodeHash node) {
+        unindex(node.getKey());
+        String text = textExtractor.apply(node);
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String normalized = normalize(text);
+        texts.put(node.getKey(), normalized);
+        for (int length = MIN_GRAM; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= normalized.length(); i++) {
+                postings.computeIfAbsent(normalized.substring(i, i + length), g -> new LinkedHashSet<>()).add(node.getKey());
+            }
+        }
+    }
+
+    void unindex(String key) {
+        String normalized = texts.remove(key);
+        if (normalized == null) {
+            return;
+        }
+        for (int length = MIN_GRAM; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= normalized.length(); i++) {
+                String gram = normalized.substring(i, i + length);
+                Set<String> keys = postings.get(gram);
+                if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of the nodes whose text contains the query, in indexing order.
+     */
+    List<String> find(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        } else if (normalized.length() < MIN_GRAM) {
+            List<String> found = new ArrayList<>();
+            for (Map.Entry<String, String> text : texts.entrySet()) {
+                if (text.getValue().contains(normalized)) {
+                    found.add(text.getKey());
+                }
+            }
+            return found;
+        }
+
+        // candidates: the nodes with the rarest n-gram of the query
+        int length = Math.min(MAX_GRAM, normalized.length());
+        Set<String> candidates = null;
+        for (int i = 0; i + length <= normalized.length(); i++) {
+            Set<String> keys = postings.get(normalized.substring(i, i + length));
+            if (keys == null) {
+                return Collections.emptyList();
+            } else if (candidates == null || keys.size() < candidates.size()) {
+                candidates = keys;
+            }
+        }
+
+        List<String> found = new ArrayList<>();
+        for (String key : candidates) {
+            if (length == normalized.length() || texts.get(key).contains(normalized)) {
+                found.add(key);
+            }
+        }
+        return found;
+    }
+}
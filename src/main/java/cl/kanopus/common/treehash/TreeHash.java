@@ -23,26 +23,60 @@
  */
 package cl.kanopus.common.treehash;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Clase utilitaria que permite generar un arbol de objetos y ademas tiene la capacidad de retornarlos en forma de Lista.
  */
 public class TreeHash implements Serializable {
 
-    private enum TYPE_NODE_LIST {
-        ALL,
-        VISIBLE
-    }
+    private static final long serialVersionUID = 1L;
+    // serialized with the compact encoding of TreeHashCodec, the data of the nodes with Java serialization
+    private static final TreeHashCodec SERIALIZATION_CODEC = new TreeHashCodec(new TreeHashCodec.DataCodec() {
+        @Override
+        public void write(DataOutput out, Object data) throws IOException {
+            ((ObjectOutput) out).writeObject(data);
+        }
+
+        @Override
+        public Object read(DataInput in) throws IOException {
+            try {
+                return ((ObjectInput) in).readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    });
 
-    private final Map<String, NodeHash> hash = new HashMap<>();
-    private TYPE_NODE_LIST lastRefresh = TYPE_NODE_LIST.ALL;
-    private boolean refresh = false;
-    private transient List<NodeHash> nodeList = new ArrayList<>();
+    private transient Map<String, NodeHash> hash = new HashMap<>();
+    // Flattened lists in pre-order, patched on each change; null when they must be rebuilt.
+    private transient NodeRows nodeList;
+    private transient NodeRows nodeVisibleList;
+    private transient NodeSearchIndex searchIndex;
+    private transient List<NodeHash> searchMarked = new ArrayList<>();
+    // flags of the nodes, by the id given to each node when added
+    transient NodeFlags flags = new NodeFlags();
     public static final String KEY_ROOT = "root";
 
     public TreeHash() {
@@ -51,55 +85,152 @@ public class TreeHash implements Serializable {
     }
 
     public final void add(NodeHash node) {
+        boolean replaced = false;
         if (hash.containsKey(node.getKey())) {
             NodeHash oldNode = hash.get(node.getKey());
             NodeHash oldParent = hash.get(oldNode.getKeyParent());
             if (oldParent != null) {
-                oldParent.keyChildren.remove(node.getKey());
+                oldParent.removeKeyChild(node.getKey());
             }
+            oldNode.detach();
+            replaced = true;
         }
 
+        NodeHash nodeParent = null;
         if (node.getKeyParent() != null) {
-            NodeHash nodeParent = hash.get(node.getKeyParent());
-            if (nodeParent != null && !nodeParent.keyChildren.contains(node.getKey())) {
-                // Add the child's key
-                nodeParent.keyChildren.add(node.getKey());
+            nodeParent = hash.get(node.getKeyParent());
+            if (nodeParent != null) {
+                // Add the child's key, if not already there
+                nodeParent.addKeyChild(node.getKey());
             }
         }
 
         hash.put(node.getKey(), node);
-        refresh = true;
+        node.attach(this);
+        if (searchIndex != null) {
+            searchIndex.index(node);
+        }
+        if (replaced || node.isHasChild()) {
+            // the node may bring or move a whole subtree
+            invalidateNodeLists();
+        } else if (nodeParent != null) {
+            if (nodeList != null) {
+                nodeList.insertLeaf(nodeParent, node);
+            }
+            if (nodeVisibleList != null) {
+                nodeVisibleList.insertLeaf(nodeParent, node);
+            }
+        }
+    }
+
+    /**
+     * Adds many nodes at once, e.g. the rows of a table with a parent key column. The nodes may come in any order: children are linked to their parents, in the order of the nodes, once
+     * all nodes are known, and the depths are computed once at the end. A node whose key is already in the tree replaces it, like {@link #add(NodeHash)}.
+     *
+     * @param nodes
+     *            the nodes to add
+     * @return the added nodes that are not connected to the root, because their parent, or the parent of an ancestor, is not in the tree; they are kept in the tree like
+     *         {@link #add(NodeHash)} does
+     */
+    public List<NodeHash> bulkLoad(Iterable<NodeHash> nodes) {
+        List<NodeHash> rows;
+        if (nodes instanceof List) {
+            rows = (List<NodeHash>) nodes;
+        } else {
+            rows = new ArrayList<>();
+            nodes.forEach(rows::add);
+        }
+
+        int capacity = (int) ((hash.size() + rows.size()) / 0.75f) + 1;
+        if (hash.size() <= 1) {
+            // avoid rehashing while loading
+            Map<String, NodeHash> presized = new HashMap<>(capacity);
+            presized.putAll(hash);
+            hash = presized;
+        }
+
+        // first pass: register every node, so parents can come after their children
+        for (NodeHash node : rows) {
+            NodeHash oldNode = hash.put(node.getKey(), node);
+            if (oldNode != null && oldNode != node) {
+                NodeHash oldParent = hash.get(oldNode.getKeyParent());
+                if (oldParent != null) {
+                    oldParent.removeKeyChild(node.getKey());
+                }
+                oldNode.detach();
+            }
+            node.attach(this);
+            if (searchIndex != null) {
+                searchIndex.index(node);
+            }
+        }
+
+        // second pass: link the children in the order of the nodes
+        for (NodeHash node : rows) {
+            NodeHash nodeParent = (node.getKeyParent() != null && hash.get(node.getKey()) == node) ? hash.get(node.getKeyParent()) : null;
+            if (nodeParent != null) {
+                nodeParent.addKeyChild(node.getKey());
+            }
+        }
+
+        // rebuilding the list of all nodes computes the depths and finds the connected nodes
+        invalidateNodeLists();
+        getNodeList();
+        List<NodeHash> connected = nodeList.rows();
+        Set<NodeHash> connectedSet = Collections.newSetFromMap(new IdentityHashMap<>(capacity));
+        connectedSet.addAll(connected);
+        List<NodeHash> orphans = new ArrayList<>();
+        for (NodeHash node : rows) {
+            if (!connectedSet.contains(node) && hash.get(node.getKey()) == node && !KEY_ROOT.equals(node.getKey())) {
+                orphans.add(node);
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * Adds the nodes of a stream at once.
+     *
+     * @see #bulkLoad(Iterable)
+     */
+    public List<NodeHash> bulkLoad(Stream<NodeHash> nodes) {
+        return bulkLoad(nodes.collect(Collectors.toList()));
     }
 
     public final void remove(String keyNode) {
+        NodeHash node = hash.get(keyNode);
+        if (node != null) {
+            removeRows(node, true);
+        }
         removeInParent(keyNode);
         removeChildren(keyNode, false);
-        refresh = true;
     }
 
     public final void removeChildren(String keyNode) {
         NodeHash node = hash.get(keyNode);
         if (node != null) {
+            removeRows(node, false);
             removeChildren(keyNode, true);
-            node.keyChildren = new ArrayList<>();
+            node.clearKeyChildren();
         }
-        refresh = true;
     }
 
     public final void removeNodeBranch(String keyNode) {
-        NodeHash node = hash.get(keyNode);
-        NodeHash nodeParent = (node != null) ? hash.get(node.getKeyParent()) : null;
-        if (nodeParent != null) {
-            if (nodeParent.keyChildren.size() == 1) {
-                removeNodeBranch(nodeParent.getKey());
-            } else if (nodeParent.keyChildren.size() > 1) {
-                for (int i = 0; i < nodeParent.keyChildren.size(); i++) {
+        String key = keyNode;
+        // climbs while the parent has a single child; bounded in case the parent keys form a cycle
+        for (int i = 0; i < hash.size(); i++) {
+            NodeHash node = hash.get(key);
+            NodeHash nodeParent = (node != null) ? hash.get(node.getKeyParent()) : null;
+            if (nodeParent == null) {
+                return;
+            } else if (nodeParent.getKeyChildren().size() == 1) {
+                key = nodeParent.getKey();
+            } else {
+                if (nodeParent.getKeyChildren().contains(key)) {
                     // remove the entire branch
-                    if (keyNode.equals(nodeParent.keyChildren.get(i))) {
-                        remove(keyNode);
-                        break;
-                    }
+                    remove(key);
                 }
+                return;
             }
         }
     }
@@ -109,141 +240,435 @@ public class TreeHash implements Serializable {
         if (node != null) {
             NodeHash nodeParent = hash.get(node.getKeyParent());
             if (nodeParent != null) {
-                for (int i = 0; i < nodeParent.keyChildren.size(); i++) {
-                    // remove reference from parent node
-                    if (keyNode.equals(nodeParent.keyChildren.get(i))) {
-                        nodeParent.keyChildren.remove(i);
-                        break;
-                    }
-                }
+                // remove reference from parent node
+                nodeParent.removeKeyChild(keyNode);
             }
         }
     }
 
     private void removeChildren(String keyNode, boolean root) {
-        NodeHash node = hash.get(keyNode);
-        if (node != null) {
-            // remove child nodes recursively
-            for (String keyChildren : node.keyChildren) {
-                removeChildren(keyChildren, false);
+        List<NodeHash> subtree = new ArrayList<>();
+        traverse(keyNode, Order.PRE_ORDER, subtree::add);
+        for (int i = root ? 1 : 0; i < subtree.size(); i++) {
+            NodeHash node = subtree.get(i);
+            node.detach();
+            hash.remove(node.getKey());
+            if (searchIndex != null) {
+                searchIndex.unindex(node.getKey());
             }
         }
-        if (!root) {
-            hash.remove(keyNode);
+    }
+
+    /**
+     * Visits the subtree of a node, the node included, in the given order. The traversal uses an explicit stack or queue, so it works on trees of any depth.
+     *
+     * @param fromKey
+     *            the key of the first node, {@link #KEY_ROOT} for the whole tree
+     * @param order
+     *            the order of the visits
+     * @param visitor
+     *            the visitor, which can stop the traversal by returning false
+     * @return true if all the nodes were visited, false if the visitor stopped the traversal
+     */
+    public boolean traverse(String fromKey, Order order, NodeVisitor visitor) {
+        NodeHash start = hash.get(fromKey);
+        if (start == null) {
+            return true;
+        }
+        switch (order) {
+            case PRE_ORDER:
+                return traversePreOrder(start, visitor);
+            case POST_ORDER:
+                return traversePostOrder(start, visitor);
+            default:
+                return traverseBreadthFirst(start, visitor);
+        }
+    }
+
+    private boolean traversePreOrder(NodeHash start, NodeVisitor visitor) {
+        if (!visitor.visit(start)) {
+            return false;
+        }
+        Deque<Iterator<String>> stack = new ArrayDeque<>();
+        stack.push(start.getKeyChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<String> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            NodeHash node = hash.get(children.next());
+            if (node != null) {
+                if (!visitor.visit(node)) {
+                    return false;
+                }
+                stack.push(node.getKeyChildren().iterator());
+            }
+        }
+        return true;
+    }
+
+    private boolean traversePostOrder(NodeHash start, NodeVisitor visitor) {
+        Deque<NodeHash> nodes = new ArrayDeque<>();
+        Deque<Iterator<String>> stack = new ArrayDeque<>();
+        nodes.push(start);
+        stack.push(start.getKeyChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<String> children = stack.peek();
+            if (!children.hasNext()) {
+                // all the children were visited
+                stack.pop();
+                if (!visitor.visit(nodes.pop())) {
+                    return false;
+                }
+                continue;
+            }
+            NodeHash node = hash.get(children.next());
+            if (node != null) {
+                nodes.push(node);
+                stack.push(node.getKeyChildren().iterator());
+            }
         }
+        return true;
+    }
+
+    private boolean traverseBreadthFirst(NodeHash start, NodeVisitor visitor) {
+        Deque<NodeHash> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            NodeHash node = queue.poll();
+            if (!visitor.visit(node)) {
+                return false;
+            }
+            for (String child : node.getKeyChildren()) {
+                NodeHash childNode = hash.get(child);
+                if (childNode != null) {
+                    queue.add(childNode);
+                }
+            }
+        }
+        return true;
     }
 
     public NodeHash getNodeHash(String key) {
         return hash.get(key);
     }
 
+    /**
+     * Returns every node of the tree, the root and the nodes not connected to it included, in no particular order.
+     */
+    Collection<NodeHash> getNodes() {
+        return hash.values();
+    }
+
+    /**
+     * Replaces the nodes of the tree with nodes whose children are already linked, as read by {@link TreeHashCodec}.
+     */
+    void restore(List<NodeHash> nodes) {
+        for (NodeHash node : hash.values()) {
+            node.detach();
+        }
+        hash = new HashMap<>((int) (nodes.size() / 0.75f) + 1);
+        for (NodeHash node : nodes) {
+            hash.put(node.getKey(), node);
+            node.attach(this);
+        }
+        searchIndex = null;
+        invalidateNodeLists();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        SERIALIZATION_CODEC.write(this, out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        hash = new HashMap<>();
+        flags = new NodeFlags();
+        searchMarked = new ArrayList<>();
+        SERIALIZATION_CODEC.read(in, this);
+    }
+
     private void fillNodeList(String keyNode, int depth, List<NodeHash> newNodeList, boolean onlyVisible) {
-        NodeHash node = hash.get(keyNode);
-        if (node != null) {
-            if (!TreeHash.KEY_ROOT.equals(keyNode)) {
-                // Only nodes other than the root are returned in the lists
-                node.setDepth(depth);
-                newNodeList.add(node);
-                depth++;
-            }
+        NodeHash start = hash.get(keyNode);
+        if (start == null) {
+            return;
+        }
+        boolean root = TreeHash.KEY_ROOT.equals(keyNode);
+        if (!root) {
+            // Only nodes other than the root are returned in the lists
+            start.setDepth(depth);
+            newNodeList.add(start);
+            depth++;
+        }
+        if (onlyVisible && !root && !start.isExpanded()) {
+            return;
+        }
 
-            if (onlyVisible && !TreeHash.KEY_ROOT.equals(keyNode)) {
-                if (node.isExpanded()) {
-                    for (String child : node.keyChildren) {
-                        fillNodeList(child, depth, newNodeList, onlyVisible);
-                    }
-                }
-            } else {
-                for (String child : node.keyChildren) {
-                    fillNodeList(child, depth, newNodeList, onlyVisible);
+        // pre-order with an explicit stack of child iterators: the depth of a child is given by the stack size
+        Deque<Iterator<String>> stack = new ArrayDeque<>();
+        stack.push(start.getKeyChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<String> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            NodeHash node = hash.get(children.next());
+            if (node != null) {
+                node.setDepth(depth + stack.size() - 1);
+                newNodeList.add(node);
+                if (!onlyVisible || node.isExpanded()) {
+                    stack.push(node.getKeyChildren().iterator());
                 }
             }
         }
     }
 
-    /** Method that returns all nodes contained in the TreeHash */
+    /**
+     * Method that returns all nodes contained in the TreeHash, in pre-order. The list is read-only and does not change afterwards: the tree keeps its own list up to date and copies it
+     * before the next change.
+     */
     public List<NodeHash> getNodeList() {
-        if (refresh || lastRefresh != TYPE_NODE_LIST.ALL) {
-            // Refresh the list to return the nodes
-            List<NodeHash> newNodeList = new ArrayList<>();
+        if (nodeList == null) {
+            List<NodeHash> newNodeList = new ArrayList<>(hash.size());
             fillNodeList(TreeHash.KEY_ROOT, 0, newNodeList, false);
-            nodeList = newNodeList;
-            refresh = false;
+            nodeList = new NodeRows(this, newNodeList, false);
+            renumber();
         }
-        lastRefresh = TYPE_NODE_LIST.ALL;
-        return nodeList;
+        return nodeList.view();
     }
 
-    /** Method that returns only nodes whose parent is visible within the TreeHash */
+    /**
+     * Method that returns only nodes whose parent is visible within the TreeHash, in pre-order. The list is read-only and, like {@link #getNodeList()}, does not change when nodes are
+     * added, removed, expanded or collapsed afterwards.
+     */
     public List<NodeHash> getNodeVisibleList() {
-        if (refresh || lastRefresh != TYPE_NODE_LIST.VISIBLE) {
-            // Refresh the list to return the nodes
+        if (nodeVisibleList == null) {
             List<NodeHash> newNodeList = new ArrayList<>();
             fillNodeList(TreeHash.KEY_ROOT, 0, newNodeList, true);
-            nodeList = newNodeList;
-            refresh = false;
+            nodeVisibleList = new NodeRows(this, newNodeList, true);
         }
-        lastRefresh = TYPE_NODE_LIST.VISIBLE;
-        return nodeList;
+        return nodeVisibleList.view();
     }
 
-    public List<NodeHash> getNodeVisibleInSearchList() {
-        if (refresh || lastRefresh != TYPE_NODE_LIST.VISIBLE) {
-            // Refresh the list to return the nodes
-            List<NodeHash> newNodeList = new ArrayList<>();
-            fillNodeList(TreeHash.KEY_ROOT, 0, newNodeList, true);
+    /**
+     * Numbers the nodes in pre-order, so subtrees become ranges of ids.
+     */
+    private void renumber() {
+        NodeHash root = hash.get(KEY_ROOT);
+        if (root != null && root.tree == this) {
+            flags.renumber(root, nodeList.rows());
+        }
+    }
 
-            nodeList = new ArrayList<>();
+    /**
+     * Indexes the text of every node for {@link #search(String)}. Nodes added or removed later are indexed or removed from the index; call this method again after changing the data of
+     * the nodes.
+     *
+     * @param textExtractor
+     *            returns the searchable text of a node, e.g. {@code node -> ((Category) node.getData()).getName()}
+     */
+    public void indexSearch(Function<? super NodeHash, String> textExtractor) {
+        NodeSearchIndex index = new NodeSearchIndex(textExtractor);
+        for (NodeHash node : hash.values()) {
+            if (!KEY_ROOT.equals(node.getKey())) {
+                index.index(node);
+            }
+        }
+        searchIndex = index;
+    }
 
-            for (NodeHash node : newNodeList) {
-                if (node.isVisibleInSearch()) {
-                    nodeList.add(node);
+    /**
+     * Finds the nodes whose text contains the query, ignoring case and accents, using the index built by {@link #indexSearch(Function)}.
+     *
+     * <p>
+     * The previous search is cleared, then the found nodes are highlighted and marked visible in search, and their ancestors are marked visible in search and expanded, so
+     * {@link #getNodeVisibleInSearchList()} returns the paths to the found nodes. Only the found nodes and their ancestors are visited.
+     *
+     * @return the found nodes, in the order they were indexed
+     */
+    public List<NodeHash> search(String query) {
+        if (searchIndex == null) {
+            throw new IllegalStateException("The search index was not built, call indexSearch first");
+        }
+        clearSearch();
+        if (query == null) {
+            return new ArrayList<>();
+        }
+
+        List<String> keys = searchIndex.find(query);
+        List<NodeHash> found = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            NodeHash node = hash.get(key);
+            found.add(node);
+            node.setHighLight(true);
+            node.setVisibleInSearch(true);
+            searchMarked.add(node);
+        }
+        for (NodeHash node : found) {
+            // stops at the first ancestor already marked by another found node; bounded in case the parent keys form a cycle
+            NodeHash parent = hash.get(node.getKeyParent());
+            for (int i = 0; parent != null && !KEY_ROOT.equals(parent.getKey()) && i < hash.size(); i++) {
+                if (parent.isVisibleInSearch() && parent.isExpanded()) {
+                    break;
                 }
+                parent.setVisibleInSearch(true);
+                parent.setExpanded(true);
+                searchMarked.add(parent);
+                parent = hash.get(parent.getKeyParent());
             }
+        }
+        return found;
+    }
 
-            refresh = false;
+    /**
+     * Clears the highlight and visible in search marks of the last {@link #search(String)}. Expanded nodes stay expanded.
+     */
+    public void clearSearch() {
+        if (searchMarked == null) {
+            searchMarked = new ArrayList<>();
         }
-        lastRefresh = TYPE_NODE_LIST.VISIBLE;
-        return nodeList;
+        for (NodeHash node : searchMarked) {
+            node.setHighLight(false);
+            node.setVisibleInSearch(false);
+        }
+        searchMarked.clear();
     }
 
+    public List<NodeHash> getNodeVisibleInSearchList() {
+        List<NodeHash> nodeVisibleInSearchList = new ArrayList<>();
+        for (NodeHash node : getNodeVisibleList()) {
+            if (node.isVisibleInSearch()) {
+                nodeVisibleInSearchList.add(node);
+            }
+        }
+        return nodeVisibleInSearchList;
+    }
+
+    /**
+     * Forces the flattened lists to be rebuilt on next use. Only needed after changing the children of a node outside of this class.
+     */
     public void setRefresh(boolean refresh) {
-        this.refresh = refresh;
+        if (refresh) {
+            invalidateNodeLists();
+        }
     }
 
-    public void propagateUncheckDown(String keyNode) {
-        NodeHash node = this.getNodeHash(keyNode);
-        if (node != null) {
-            if (node.isSelectable()) {
-                node.setSelected(false);
+    private void invalidateNodeLists() {
+        nodeList = null;
+        nodeVisibleList = null;
+        flags.invalidateOrder();
+    }
+
+    /**
+     * Called by a node of this tree when it is expanded or collapsed: inserts or removes the visible rows of its subtree.
+     */
+    void expandedChanged(NodeHash node) {
+        if (nodeVisibleList == null) {
+            return;
+        }
+        if (node.isExpanded()) {
+            if (nodeVisibleList.indexOf(node) < 0) {
+                // an ancestor is collapsed
+                return;
+            }
+            List<NodeHash> rows = new ArrayList<>();
+            for (String child : node.getKeyChildren()) {
+                fillNodeList(child, node.getDepth() + 1, rows, true);
             }
-            for (String child : node.keyChildren) {
-                propagateUncheckDown(child);
+            nodeVisibleList.insertChildren(node, rows);
+        } else {
+            nodeVisibleList.removeSubtree(node, false);
+        }
+    }
+
+    /**
+     * Removes the rows of a node's subtree from the lists, before the node is unlinked from its parent.
+     */
+    private void removeRows(NodeHash node, boolean includeNode) {
+        if (KEY_ROOT.equals(node.getKey())) {
+            if (includeNode) {
+                invalidateNodeLists();
+            } else {
+                nodeList = (nodeList != null) ? new NodeRows(this, new ArrayList<>(), false) : null;
+                nodeVisibleList = (nodeVisibleList != null) ? new NodeRows(this, new ArrayList<>(), true) : null;
             }
+            return;
+        }
+        if (nodeList != null) {
+            nodeList.removeSubtree(node, includeNode);
+        }
+        if (nodeVisibleList != null) {
+            nodeVisibleList.removeSubtree(node, includeNode);
         }
     }
 
+    /**
+     * Unselects the selectable nodes of a subtree, cleared as a range of bits while the nodes are numbered in pre-order. After nodes are added or removed the subtree is walked instead,
+     * until the list of all nodes is built again and numbers them.
+     */
+    public void propagateUncheckDown(String keyNode) {
+        setSelectedDown(keyNode, false);
+    }
+
+    /**
+     * Selects the selectable nodes of a subtree, as a range of bits when the nodes are numbered in pre-order.
+     *
+     * @see #propagateUncheckDown(String)
+     */
     public void propagateCheckDown(String keyNode) {
-        NodeHash node = this.getNodeHash(keyNode);
-        if (node != null) {
+        setSelectedDown(keyNode, true);
+    }
+
+    private void setSelectedDown(String keyNode, boolean selected) {
+        NodeHash start = hash.get(keyNode);
+        // numbering the whole tree again would cost more than walking a subtree, e.g. a leaf loaded lazily and checked
+        int end = (start != null && start.tree == this) ? flags.subtreeEnd(start.id) : -1;
+        if (end >= 0) {
+            flags.setSelected(start.id, end, selected);
+            return;
+        }
+        traverse(keyNode, Order.PRE_ORDER, node -> {
             if (node.isSelectable()) {
-                node.setSelected(true);
-            }
-            for (String child : node.keyChildren) {
-                propagateCheckDown(child);
+                node.setSelected(selected);
             }
-        }
+            return true;
+        });
     }
 
     public void propagateCheckUp(String keyNode) {
         NodeHash node = this.getNodeHash(keyNode);
-        if (node != null) {
+        // bounded in case the parent keys form a cycle
+        for (int i = 0; node != null && i < hash.size(); i++) {
             if (node.isSelectable()) {
                 node.setSelected(true);
             }
-            if (!KEY_ROOT.equals(keyNode)) {
-                propagateCheckUp(node.getKeyParent());
+            if (KEY_ROOT.equals(node.getKey())) {
+                break;
             }
+            node = this.getNodeHash(node.getKeyParent());
         }
     }
+
+    /**
+     * Returns the nodes whose selection differs from their original selection, computed as the difference of two bit sets. The nodes come in pre-order when the ids are numbered in
+     * pre-order, see {@link #propagateUncheckDown(String)}.
+     */
+    public List<NodeHash> getSelectionChanges() {
+        return flags.selectionChanges();
+    }
+
+    /**
+     * Order of the nodes visited by {@link TreeHash#traverse(String, Order, NodeVisitor)}.
+     */
+    public enum Order {
+        /** A node before its children, as in the lists of the tree. */
+        PRE_ORDER,
+        /** A node after its children, e.g. to release the children first. */
+        POST_ORDER,
+        /** Level by level. */
+        BREADTH_FIRST
+    }
 }
@@ -0,0 +1,477 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of a {@link TreeHash}, e.g. to keep trees in session storage or in a distributed cache. Java serialization of a TreeHash uses this encoding as well.
+ *
+ * <p>
+ * The nodes connected to the root are written in pre-order, each as its key, type, flags in one byte, data and the varint count of its children, which follow it: the parent and the
+ * children of a node are implied by the order. A node that also lists a child written under another parent, e.g. a node shared by two parents, is written with all its children
+ * keys. The nodes not connected to the root follow, with their parent key and the keys of their children. Every string is written once: later occurrences are written as a varint
+ * index into the strings already written. The data of the nodes is written by a pluggable {@link DataCodec}.
+ *
+ * <p>
+ * Children keys that are not in the tree are not kept.
+ */
+public class TreeHashCodec {
+
+    /**
+     * Writes and reads the data of the nodes.
+     */
+    public interface DataCodec {
+
+        void write(DataOutput out, Object data) throws IOException;
+
+        Object read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Codec for data that is null, a String, an Integer, a Long, a Boolean or a Double. Other data fail with a {@link NotSerializableException}.
+     */
+    public static final DataCodec SIMPLE_DATA = new SimpleDataCodec();
+
+    private static final int VERSION = 3;
+    // version 2 has no EXPLICIT_CHILDREN, so it is read as is
+    private static final int MIN_VERSION = 2;
+    // strings longer than this are read in chunks, so a corrupt length fails at the end of the input instead of allocating its size
+    private static final int CHUNK = 8192;
+    private static final int SELECTED = 1;
+    private static final int ORIGINAL_SELECTED = 1 << 1;
+    private static final int SELECTABLE = 1 << 2;
+    private static final int EXPANDED = 1 << 3;
+    private static final int HIGH_LIGHT = 1 << 4;
+    private static final int VISIBLE_IN_SEARCH = 1 << 5;
+    // the parent key of a connected node is written, since it is not the key of the node it follows
+    private static final int EXPLICIT_PARENT = 1 << 6;
+    // all the children keys of a connected node are written, since some of them are written under another parent
+    private static final int EXPLICIT_CHILDREN = 1 << 7;
+
+    private final DataCodec dataCodec;
+
+    public TreeHashCodec(DataCodec dataCodec) {
+        this.dataCodec = dataCodec;
+    }
+
+    public byte[] encode(TreeHash tree) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(tree, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public TreeHash decode(byte[] bytes) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(TreeHash tree, DataOutput out) throws IOException {
+        // the connected nodes in pre-order, with the index of their parent and the count of their children
+        List<NodeHash> nodes = new ArrayList<>();
+        int[] parents = new int[tree.getNodes().size()];
+        int[] childCounts = new int[parents.length];
+        boolean[] explicitChildren = new boolean[parents.length];
+        Map<NodeHash, Boolean> written = new IdentityHashMap<>();
+        NodeHash root = tree.getNodeHash(TreeHash.KEY_ROOT);
+        if (root != null) {
+            Deque<Iterator<String>> stack = new ArrayDeque<>();
+            Deque<Integer> indexes = new ArrayDeque<>();
+            written.put(root, Boolean.TRUE);
+            nodes.add(root);
+            parents[0] = -1;
+            stack.push(root.getKeyChildren().iterator());
+            indexes.push(0);
+            while (!stack.isEmpty()) {
+                Iterator<String> children = stack.peek();
+                if (!children.hasNext()) {
+                    stack.pop();
+                    indexes.pop();
+                    continue;
+                }
+                NodeHash node = tree.getNodeHash(children.next());
+                // skips the keys not in the tree, and stops if the parent keys form a cycle
+                if (node == null) {
+                    continue;
+                }
+                int parent = indexes.peek();
+                if (written.put(node, Boolean.TRUE) != null) {
+                    explicitChildren[parent] = true;
+                    continue;
+                }
+                childCounts[parent]++;
+                parents[nodes.size()] = parent;
+                indexes.push(nodes.size());
+                nodes.add(node);
+                stack.push(node.getKeyChildren().iterator());
+            }
+        }
+
+        StringWriter strings = new StringWriter(out);
+        out.writeByte(VERSION);
+        writeVarInt(out, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeHash node = nodes.get(i);
+            String impliedParent = (parents[i] >= 0) ? nodes.get(parents[i]).getKey() : null;
+            boolean explicitParent = !Objects.equals(node.getKeyParent(), impliedParent);
+            strings.write(node.getKey());
+            strings.write(node.getType());
+            out.writeByte(flags(node) | (explicitParent ? EXPLICIT_PARENT : 0) | (explicitChildren[i] ? EXPLICIT_CHILDREN : 0));
+            if (explicitParent) {
+                strings.write(node.getKeyParent());
+            }
+            dataCodec.write(out, node.getData());
+            writeVarInt(out, childCounts[i]);
+            if (explicitChildren[i]) {
+                List<String> children = new ArrayList<>();
+                for (String child : node.getKeyChildren()) {
+                    if (tree.getNodeHash(child) != null) {
+                        children.add(child);
+                    }
+                }
+                writeVarInt(out, children.size());
+                for (String child : children) {
+                    strings.write(child);
+                }
+            }
+        }
+
+        List<NodeHash> unconnected = new ArrayList<>();
+        for (NodeHash node : tree.getNodes()) {
+            if (!written.containsKey(node)) {
+                unconnected.add(node);
+            }
+        }
+        writeVarInt(out, unconnected.size());
+        for (NodeHash node : unconnected) {
+            strings.write(node.getKey());
+            strings.write(node.getType());
+            out.writeByte(flags(node));
+            strings.write(node.getKeyParent());
+            dataCodec.write(out, node.getData());
+            List<String> children = node.getKeyChildren();
+            writeVarInt(out, children.size());
+            for (String child : children) {
+                strings.write(child);
+            }
+        }
+    }
+
+    public TreeHash read(DataInput in) throws IOException {
+        TreeHash tree = new TreeHash();
+        read(in, tree);
+        return tree;
+    }
+
+    /**
+     * Reads the nodes into a tree, replacing its nodes.
+     */
+    void read(DataInput in, TreeHash tree) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new StreamCorruptedException("Unknown TreeHash encoding version: " + version);
+        }
+        try {
+            tree.restore(readNodes(in));
+        } catch (EOFException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Truncated TreeHash encoding");
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+
+    private List<NodeHash> readNodes(DataInput in) throws IOException {
+        List<String> strings = new ArrayList<>();
+        int size = readCount(in);
+        // the capacity is bounded, so a corrupt count fails at the end of the input
+        List<NodeHash> nodes = new ArrayList<>(Math.min(size, CHUNK));
+        Set<String> keys = new HashSet<>(Math.min(size, CHUNK));
+        // the ancestors of the next node, with the count of their children still to read
+        NodeHash[] ancestors = new NodeHash[16];
+        int[] pending = new int[16];
+        int top = 0;
+        for (int i = 0; i < size; i++) {
+            while (top > 0 && pending[top - 1] == 0) {
+                top--;
+            }
+            if (i > 0 && top == 0) {
+                throw new StreamCorruptedException("TreeHash encoding with more than one root");
+            }
+            NodeHash parent = (top > 0) ? ancestors[top - 1] : null;
+            String key = readString(in, strings);
+            String type = readString(in, strings);
+            int flags = in.readUnsignedByte();
+            String keyParent = ((flags & EXPLICIT_PARENT) != 0) ? readString(in, strings) : (parent != null ? parent.getKey() : null);
+            checkNewKey(keys, key);
+            NodeHash node = readNode(in, key, keyParent, type, flags);
+            if (parent != null) {
+                // a no-op when the parent was written with all its children keys, which keep their order
+                parent.addKeyChild(key);
+                pending[top - 1]--;
+            }
+            if (top == ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors, 2 * top);
+                pending = Arrays.copyOf(pending, 2 * top);
+            }
+            ancestors[top] = node;
+            pending[top] = readCount(in);
+            top++;
+            if ((flags & EXPLICIT_CHILDREN) != 0) {
+                readChildren(in, strings, node);
+            }
+            nodes.add(node);
+        }
+        for (int i = 0; i < top; i++) {
+            if (pending[i] != 0) {
+                throw new StreamCorruptedException("Missing children of node: " + ancestors[i].getKey());
+            }
+        }
+
+        int unconnected = readCount(in);
+        for (int i = 0; i < unconnected; i++) {
+            String key = readString(in, strings);
+            String type = readString(in, strings);
+            int flags = in.readUnsignedByte();
+            String keyParent = readString(in, strings);
+            checkNewKey(keys, key);
+            NodeHash node = readNode(in, key, keyParent, type, flags);
+            readChildren(in, strings, node);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private static void checkNewKey(Set<String> keys, String key) throws StreamCorruptedException {
+        if (!keys.add(key)) {
+            throw new StreamCorruptedException("Duplicate node key: " + key);
+        }
+    }
+
+    private static void readChildren(DataInput in, List<String> strings, NodeHash node) throws IOException {
+        int children = readCount(in);
+        for (int c = 0; c < children; c++) {
+            node.addKeyChild(readString(in, strings));
+        }
+    }
+
+    private NodeHash readNode(DataInput in, String key, String keyParent, String type, int flags) throws IOException {
+        NodeHash node = new NodeHash(key, dataCodec.read(in), keyParent, type);
+        node.setSelected((flags & SELECTED) != 0);
+        node.setOriginalSelected((flags & ORIGINAL_SELECTED) != 0);
+        node.setSelectable((flags & SELECTABLE) != 0);
+        node.setExpanded((flags & EXPANDED) != 0);
+        node.setHighLight((flags & HIGH_LIGHT) != 0);
+        node.setVisibleInSearch((flags & VISIBLE_IN_SEARCH) != 0);
+        return node;
+    }
+
+    private static int flags(NodeHash node) {
+        int flags = 0;
+        flags |= node.isSelected() ? SELECTED : 0;
+        flags |= node.isOriginalSelected() ? ORIGINAL_SELECTED : 0;
+        flags |= node.isSelectable() ? SELECTABLE : 0;
+        flags |= node.isExpanded() ? EXPANDED : 0;
+        flags |= node.isHighLight() ? HIGH_LIGHT : 0;
+        flags |= node.isVisibleInSearch() ? VISIBLE_IN_SEARCH : 0;
+        return flags;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    static void writeUtf8(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readUtf8(DataInput in) throws IOException {
+        int length = readCount(in);
+        byte[] bytes = new byte[Math.min(length, CHUNK)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            in.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0) {
+            throw new StreamCorruptedException("Negative count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads a string written by {@link StringWriter}: 0 for null, 1 for a new string followed by its text, or the index of a string already read plus 2.
+     */
+    private static String readString(DataInput in, List<String> strings) throws IOException {
+        int code = readVarInt(in);
+        if (code == 0) {
+            return null;
+        } else if (code == 1) {
+            String value = readUtf8(in);
+            strings.add(value);
+            return value;
+        } else if (code - 2 < strings.size()) {
+            return strings.get(code - 2);
+        }
+        throw new StreamCorruptedException("Unknown string index: " + (code - 2));
+    }
+
+    private static final class StringWriter {
+
+        private final DataOutput out;
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private StringWriter(DataOutput out) {
+            this.out = out;
+        }
+
+        private void write(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = indexes.get(value);
+            if (index != null) {
+                writeVarInt(out, index + 2);
+            } else {
+                indexes.put(value, indexes.size());
+                writeVarInt(out, 1);
+                writeUtf8(out, value);
+            }
+        }
+    }
+
+    private static final class SimpleDataCodec implements DataCodec {
+
+        private static final int NULL = 0;
+        private static final int STRING = 1;
+        private static final int INTEGER = 2;
+        private static final int LONG = 3;
+        private static final int BOOLEAN = 4;
+        private static final int DOUBLE = 5;
+
+        @Override
+        public void write(DataOutput out, Object data) throws IOException {
+            if (data == null) {
+                out.writeByte(NULL);
+            } else if (data instanceof String) {
+                out.writeByte(STRING);
+                writeUtf8(out, (String) data);
+            } else if (data instanceof Integer) {
+                out.writeByte(INTEGER);
+                int value = (Integer) data;
+                // zigzag, so small negative values are short too
+                writeVarInt(out, (value << 1) ^ (value >> 31));
+            } else if (data instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) data);
+            } else if (data instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) data);
+            } else if (data instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) data);
+            } else {
+                throw new NotSerializableException(data.getClass().getName());
+            }
+        }
+
+        @Override
+        public Object read(DataInput in) throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readUtf8(in);
+                case INTEGER:
+                    int value = readVarInt(in);
+                    return (value >>> 1) ^ -(value & 1);
+                case LONG:
+                    return in.readLong();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case DOUBLE:
+                    return in.readDouble();
+                default:
+                    throw new StreamCorruptedException("Unknown data tag: " + tag);
+            }
+        }
+    }
+}
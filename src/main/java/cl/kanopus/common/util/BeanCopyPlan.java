@@ -0,0 +1,424 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+
+/**
+ * Pre-compiled list of property copies between a source class and a target class.
+ *
+ * <p>
+ * A plan resolves once everything {@link KanopusBeanUtils} used to look up on every copy: property descriptors, the order of the properties, the property name translation and the dotted target paths. Each
+ * property is then read and written through method handles, so executing a plan does no introspection, no map allocation and no string splitting.
+ */
+final class BeanCopyPlan {
+
+    /** Returned by {@link PropertyCopy#read(Object)} when the source value cannot be obtained. */
+    static final Object UNREADABLE = new Object();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final String PROPERTY_PATH_SEPARATOR = ".";
+    private static final BeanMapperGenerator.GeneratedMapper NOT_GENERATED = new BeanMapperGenerator.GeneratedMapper(null) {
+        @Override
+        void map(Object source, Object target, CopyContext context) {
+            throw new IllegalStateException("Mapper not generated");
+        }
+    };
+
+    private final Class<?> sourceClass;
+    private final Class<?> targetClass;
+    private final Map<String, String> translationMap;
+    private final PropertyCopy[] properties;
+    private final boolean nestedProperties;
+    private volatile BeanMapperGenerator.GeneratedMapper generatedMapper;
+
+    private BeanCopyPlan(Class<?> sourceClass, Class<?> targetClass, Map<String, String> translationMap, PropertyCopy[] properties) {
+        this.sourceClass = sourceClass;
+        this.targetClass = targetClass;
+        this.translationMap = translationMap;
+        this.properties = properties;
+        boolean nested = false;
+        for (PropertyCopy property : properties) {
+            nested |= !property.isTargetSimple();
+        }
+        this.nestedProperties = nested;
+    }
+
+    Class<?> getSourceClass() {
+        return sourceClass;
+    }
+
+    Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    Map<String, String> getTranslationMap() {
+        return translationMap;
+    }
+
+    PropertyCopy[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns true if some property may hold a copied bean, so the objects copied by this plan can be referenced again within the same graph.
+     */
+    boolean hasNestedProperties() {
+        return nestedProperties;
+    }
+
+    /**
+     * Returns the bytecode-generated mapper of this plan, generating it on first use.
+     *
+     * @return the generated mapper, or null if the classes of the plan cannot be accessed from a generated class
+     */
+    BeanMapperGenerator.GeneratedMapper getGeneratedMapper() {
+        BeanMapperGenerator.GeneratedMapper mapper = generatedMapper;
+        if (mapper == null) {
+            // Concurrent first uses may generate the mapper twice, which is harmless.
+            mapper = BeanMapperGenerator.generate(this);
+            generatedMapper = mapper = (mapper != null) ? mapper : NOT_GENERATED;
+        }
+        return (mapper != NOT_GENERATED) ? mapper : null;
+    }
+
+    /**
+     * Copies the property at the given index. Called by the generated mappers for the properties that need conversions.
+     */
+    void copy(int index, Object source, Object target, CopyContext context) {
+        PropertyCopy property = properties[index];
+        Object value = property.read(source);
+        if (value != UNREADABLE && value != null) {
+            KanopusBeanUtils.copyProperty(property, value, target, translationMap, null, context);
+        }
+    }
+
+    static BeanCopyPlan compile(Class<?> sourceClass, Class<?> targetClass, Map<String, String> translationMap) {
+        // Declared properties first, followed by those from the translation map.
+        Map<String, SourceProperty> sourceProperties = new LinkedHashMap<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(sourceClass)) {
+            MethodHandle getter = pd.getName().equals("class") ? null : toGetter(pd.getReadMethod());
+            if (getter != null) {
+                sourceProperties.put(pd.getName(), new SourceProperty(pd.getPropertyType(), new MethodHandle[]{getter}, pd.getReadMethod()));
+            }
+        }
+        if (translationMap != null) {
+            for (String propName : translationMap.keySet()) {
+                SourceProperty sp = resolveSourcePath(sourceClass, propName);
+                if (sp != null) {
+                    sourceProperties.remove(propName);
+                    sourceProperties.put(propName, sp);
+                }
+            }
+        }
+
+        List<PropertyCopy> copies = new ArrayList<>(sourceProperties.size());
+        for (Map.Entry<String, SourceProperty> entry : sourceProperties.entrySet()) {
+            String sourcePropName = entry.getKey();
+            String targetPropName = sourcePropName;
+            if (translationMap != null) {
+                if (translationMap.containsKey(sourcePropName)) {
+                    targetPropName = translationMap.get(sourcePropName);
+                } else if (translationMap.containsValue(targetPropName)) {
+                    // the translation map links another source property to this target property.
+                    continue;
+                }
+            }
+            PropertyCopy copy = resolveTargetPath(sourcePropName, entry.getValue(), targetClass, targetPropName);
+            if (copy != null) {
+                copies.add(copy);
+            }
+        }
+        return new BeanCopyPlan(sourceClass, targetClass, translationMap, copies.toArray(new PropertyCopy[0]));
+    }
+
+    private static SourceProperty resolveSourcePath(Class<?> sourceClass, String propertyPath) {
+        String[] props = propertyPath.split("\\.");
+        MethodHandle[] getters = new MethodHandle[props.length];
+        Class<?> type = sourceClass;
+        for (int i = 0; i < props.length; i++) {
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(type, props[i]);
+            getters[i] = (pd != null) ? toGetter(pd.getReadMethod()) : null;
+            if (getters[i] == null) {
+                return null;
+            }
+            type = pd.getPropertyType();
+        }
+        return new SourceProperty(type, getters, (props.length == 1) ? BeanUtils.getPropertyDescriptor(sourceClass, propertyPath).getReadMethod() : null);
+    }
+
+    private static PropertyCopy resolveTargetPath(String sourcePropName, SourceProperty source, Class<?> targetClass, String targetPropName) {
+        String[] props = targetPropName.split("\\.");
+        PathSegment[] path = new PathSegment[props.length - 1];
+        Class<?> ownerType = targetClass;
+        for (int i = 0; i < path.length; i++) {
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(ownerType, props[i]);
+            MethodHandle getter = (pd != null) ? toGetter(pd.getReadMethod()) : null;
+            if (getter == null) {
+                return null;
+            }
+            path[i] = new PathSegment(getter, toSetter(pd.getWriteMethod()), pd.getPropertyType());
+            ownerType = pd.getPropertyType();
+        }
+
+        String leafName = props[props.length - 1];
+        PropertyDescriptor targetDesc = BeanUtils.getPropertyDescriptor(ownerType, leafName);
+        MethodHandle setter = (targetDesc != null) ? toSetter(targetDesc.getWriteMethod()) : null;
+        if (setter == null) {
+            // the target attribute does not exist or is not writable.
+            return null;
+        }
+        return new PropertyCopy(sourcePropName, source, path, leafName, setter, targetDesc, getGenericDeclaredType(targetClass, targetPropName));
+    }
+
+    private static Class<?> getGenericDeclaredType(Class<?> parentClass, String propertyName) {
+        if (propertyName.contains(PROPERTY_PATH_SEPARATOR)) {
+            return null;
+        }
+        return KanopusBeanUtils.getGenericDeclaredType(parentClass, propertyName);
+    }
+
+    private static MethodHandle toGetter(Method method) {
+        MethodHandle handle = unreflect(method);
+        return (handle != null) ? handle.asType(GETTER_TYPE) : null;
+    }
+
+    private static MethodHandle toSetter(Method method) {
+        MethodHandle handle = unreflect(method);
+        return (handle != null) ? handle.asType(SETTER_TYPE) : null;
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        if (method == null || !method.trySetAccessible()) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static Constructor<?> getDefaultConstructor(Class<?> type) {
+        if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            Constructor<?> ctor = type.getDeclaredConstructor();
+            return ctor.trySetAccessible() ? ctor : null;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Exception unchecked(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return (t instanceof Exception) ? (Exception) t : new UndeclaredThrowableException(t);
+    }
+
+    private static final class SourceProperty {
+
+        private final Class<?> type;
+        private final MethodHandle[] getters;
+        private final Method readMethod;
+
+        private SourceProperty(Class<?> type, MethodHandle[] getters, Method readMethod) {
+            this.type = type;
+            this.getters = getters;
+            this.readMethod = readMethod;
+        }
+    }
+
+    private static final class PathSegment {
+
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final Constructor<?> constructor;
+
+        private PathSegment(MethodHandle getter, MethodHandle setter, Class<?> type) {
+            this.getter = getter;
+            this.setter = setter;
+            this.constructor = getDefaultConstructor(type);
+        }
+    }
+
+    /**
+     * Copy of a single source property into a (possibly nested) target property.
+     */
+    static final class PropertyCopy {
+
+        private final String sourceName;
+        private final Class<?> sourceType;
+        private final MethodHandle[] sourceGetters;
+        private final Method sourceReadMethod;
+        private final PathSegment[] targetPath;
+        private final String targetName;
+        private final MethodHandle targetSetter;
+        private final Method targetWriteMethod;
+        private final Class<?> targetType;
+        private final Class<?> targetWriteType;
+        private final Class<?> targetElementType;
+        private final Constructor<?> targetConstructor;
+        private final boolean targetSimple;
+        private final boolean directWrite;
+
+        private PropertyCopy(String sourceName, SourceProperty source, PathSegment[] targetPath, String targetName, MethodHandle targetSetter, PropertyDescriptor targetDesc,
+                Class<?> targetElementType) {
+            Class<?> targetType = targetDesc.getPropertyType();
+            this.sourceName = sourceName;
+            this.sourceType = source.type;
+            this.sourceGetters = source.getters;
+            this.sourceReadMethod = source.readMethod;
+            this.targetPath = targetPath;
+            this.targetName = targetName;
+            this.targetSetter = targetSetter;
+            this.targetWriteMethod = (targetPath.length == 0) ? targetDesc.getWriteMethod() : null;
+            this.targetType = targetType;
+            this.targetWriteType = MethodType.methodType(targetType).wrap().returnType();
+            this.targetElementType = targetElementType;
+            this.targetSimple = BeanUtils.isSimpleProperty(targetType);
+            // Lists assigned from lists or arrays are rebuilt later, so there is no need to pre-copy them.
+            boolean rebuilt = List.class.isAssignableFrom(sourceType) && (List.class.isAssignableFrom(targetType) || targetType.isArray());
+            this.targetConstructor = (targetSimple || rebuilt) ? null : getDefaultConstructor(targetType);
+            // Collections and maps are handed to Spring so that their elements are converted to the declared generic type.
+            this.directWrite = !Collection.class.isAssignableFrom(targetType) && !Map.class.isAssignableFrom(targetType);
+        }
+
+        String getSourceName() {
+            return sourceName;
+        }
+
+        Class<?> getSourceType() {
+            return sourceType;
+        }
+
+        /**
+         * Returns the getter of a non-nested source property, or null if the source name is a property path.
+         */
+        Method getSourceReadMethod() {
+            return sourceReadMethod;
+        }
+
+        /**
+         * Returns the setter of a non-nested target property, or null if the target name is a property path.
+         */
+        Method getTargetWriteMethod() {
+            return targetWriteMethod;
+        }
+
+        Class<?> getTargetType() {
+            return targetType;
+        }
+
+        Class<?> getTargetElementType() {
+            return targetElementType;
+        }
+
+        boolean isTargetSimple() {
+            return targetSimple;
+        }
+
+        Constructor<?> getTargetConstructor() {
+            return targetConstructor;
+        }
+
+        /**
+         * Reads the source value, following the property path if the source name is a nested one.
+         *
+         * @return the value, or {@link #UNREADABLE} if a getter failed or an intermediate value is null
+         */
+        Object read(Object source) {
+            Object value = source;
+            try {
+                for (MethodHandle getter : sourceGetters) {
+                    if (value == null) {
+                        return UNREADABLE;
+                    }
+                    value = (Object) getter.invokeExact(value);
+                }
+            } catch (Throwable t) {
+                unchecked(t);
+                return UNREADABLE;
+            }
+            return value;
+        }
+
+        /**
+         * Returns the object that owns the target property, instantiating the null intermediate objects of a nested target path.
+         *
+         * @return the owner of the target property, or null if the path cannot be completed
+         */
+        Object resolveTargetOwner(Object target) throws Exception {
+            Object owner = target;
+            try {
+                for (PathSegment segment : targetPath) {
+                    Object value = (Object) segment.getter.invokeExact(owner);
+                    if (value == null) {
+                        if (segment.setter == null || segment.constructor == null) {
+                            return null;
+                        }
+                        value = BeanUtils.instantiateClass(segment.constructor);
+                        segment.setter.invokeExact(owner, value);
+                    }
+                    owner = value;
+                }
+            } catch (Throwable t) {
+                throw unchecked(t);
+            }
+            return owner;
+        }
+
+        /**
+         * Writes the value in the target property. Values that are not directly assignable are delegated to Spring for type conversion.
+         */
+        void write(Object owner, Object value) throws Exception {
+            if (directWrite && targetWriteType.isInstance(value)) {
+                try {
+                    targetSetter.invokeExact(owner, value);
+                } catch (Throwable t) {
+                    throw unchecked(t);
+                }
+            } else {
+                new BeanWrapperImpl(owner).setPropertyValue(targetName, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.Set;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+/**
+ * Generates a hidden class implementing {@link BeanMapper} for a {@link BeanCopyPlan}.
+ *
+ * <p>
+ * Properties whose source and target have the same simple type are copied with direct getter and setter calls. Every other property is delegated to {@link BeanCopyPlan#copy(int, Object, Object, CopyContext)},
+ * so the generated mapper keeps the conversions and the shared-reference handling of the reflection engine.
+ */
+final class BeanMapperGenerator {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String CLASS_NAME = Type.getInternalName(BeanMapperGenerator.class).replace("BeanMapperGenerator", "GeneratedBeanMapper");
+    private static final String SUPER_NAME = Type.getInternalName(GeneratedMapper.class);
+    private static final String PLAN_NAME = Type.getInternalName(BeanCopyPlan.class);
+    private static final String PLAN_DESC = Type.getDescriptor(BeanCopyPlan.class);
+    private static final String CONTEXT_DESC = Type.getDescriptor(CopyContext.class);
+    private static final String OBJECT_NAME = Type.getInternalName(Object.class);
+    private static final String EXCEPTION_NAME = Type.getInternalName(Exception.class);
+
+    private static final Set<Class<?>> DIRECT_TYPES = Set.of(String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigDecimal.class, BigInteger.class, Date.class, LocalDate.class, LocalDateTime.class, LocalTime.class);
+
+    private BeanMapperGenerator() {
+    }
+
+    /**
+     * Generates the mapper of a copy plan.
+     *
+     * @return the mapper, or null if the classes of the plan cannot be accessed from a generated class
+     */
+    static GeneratedMapper generate(BeanCopyPlan plan) {
+        if (!isAccessible(plan.getSourceClass()) || !isAccessible(plan.getTargetClass())) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup mapperLookup = LOOKUP.defineHiddenClass(generateClass(plan), true);
+            return (GeneratedMapper) mapperLookup.findConstructor(mapperLookup.lookupClass(), MethodType.methodType(void.class, BeanCopyPlan.class)).invoke(plan);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        try {
+            // the generated class is defined in the class loader of this library, so it must resolve the same class.
+            LOOKUP.accessClass(type);
+            return !type.isHidden() && Class.forName(type.getName(), false, BeanMapperGenerator.class.getClassLoader()) == type;
+        } catch (IllegalAccessException | ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean isDirect(BeanCopyPlan.PropertyCopy property) {
+        Method read = property.getSourceReadMethod();
+        Method write = property.getTargetWriteMethod();
+        Class<?> type = property.getSourceType();
+        return read != null && write != null && type == property.getTargetType() && (type.isPrimitive() || DIRECT_TYPES.contains(type))
+                && Modifier.isPublic(read.getModifiers()) && Modifier.isPublic(write.getModifiers());
+    }
+
+    private static byte[] generateClass(BeanCopyPlan plan) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // frames only merge identical types; avoid loading classes from this class loader.
+                return OBJECT_NAME;
+            }
+        };
+        cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, CLASS_NAME, null, SUPER_NAME, null);
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + PLAN_DESC + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitVarInsn(Opcodes.ALOAD, 1);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, SUPER_NAME, "<init>", "(" + PLAN_DESC + ")V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor map = cw.visitMethod(0, "map", "(Ljava/lang/Object;Ljava/lang/Object;" + CONTEXT_DESC + ")V", null, null);
+        map.visitCode();
+        String sourceName = Type.getInternalName(plan.getSourceClass());
+        String targetName = Type.getInternalName(plan.getTargetClass());
+        BeanCopyPlan.PropertyCopy[] properties = plan.getProperties();
+        for (int i = 0; i < properties.length; i++) {
+            if (isDirect(properties[i])) {
+                generateDirectCopy(map, properties[i], sourceName, targetName);
+            } else {
+                // this.plan.copy(i, source, target, context)
+                map.visitVarInsn(Opcodes.ALOAD, 0);
+                map.visitFieldInsn(Opcodes.GETFIELD, SUPER_NAME, "plan", PLAN_DESC);
+                map.visitLdcInsn(i);
+                map.visitVarInsn(Opcodes.ALOAD, 1);
+                map.visitVarInsn(Opcodes.ALOAD, 2);
+                map.visitVarInsn(Opcodes.ALOAD, 3);
+                map.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PLAN_NAME, "copy", "(ILjava/lang/Object;Ljava/lang/Object;" + CONTEXT_DESC + ")V", false);
+            }
+        }
+        map.visitInsn(Opcodes.RETURN);
+        map.visitMaxs(0, 0);
+        map.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates {@code try { value = source.getX(); if (value != null) target.setX(value); } catch (Exception e) { }}, the same semantics of the reflection engine.
+     */
+    private static void generateDirectCopy(MethodVisitor mv, BeanCopyPlan.PropertyCopy property, String sourceName, String targetName) {
+        Method read = property.getSourceReadMethod();
+        Method write = property.getTargetWriteMethod();
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        Label next = new Label();
+        mv.visitTryCatchBlock(start, end, handler, EXCEPTION_NAME);
+
+        mv.visitLabel(start);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, targetName);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, sourceName);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, sourceName, read.getName(), Type.getMethodDescriptor(read), false);
+        if (!property.getSourceType().isPrimitive()) {
+            Label notNull = new Label();
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+            mv.visitInsn(Opcodes.POP2);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(notNull);
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, targetName, write.getName(), Type.getMethodDescriptor(write), false);
+        Class<?> returnType = write.getReturnType();
+        if (returnType != void.class) {
+            // fluent setters
+            mv.visitInsn((returnType == long.class || returnType == double.class) ? Opcodes.POP2 : Opcodes.POP);
+        }
+        mv.visitLabel(end);
+        mv.visitJumpInsn(Opcodes.GOTO, next);
+
+        mv.visitLabel(handler);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitLabel(next);
+    }
+
+    /**
+     * Superclass of the generated mappers. A call to {@link #map(Object, Object)} starts a new deep copy, nested copies share the context of their root copy.
+     */
+    abstract static class GeneratedMapper implements BeanMapper<Object, Object> {
+
+        final BeanCopyPlan plan;
+
+        GeneratedMapper(BeanCopyPlan plan) {
+            this.plan = plan;
+        }
+
+        @Override
+        public final void map(Object source, Object target) {
+            CopyContext context = new CopyContext();
+            context.putCopy(source, target);
+            map(source, target, context);
+        }
+
+        abstract void map(Object source, Object target, CopyContext context);
+    }
+}
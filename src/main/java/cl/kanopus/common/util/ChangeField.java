@@ -0,0 +1,167 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Field compared by {@link ChangeUtils#checkChange(Object, Object)}, classified once per class and read through a method handle.
+ *
+ * <p>
+ * Primitive fields are read with their own type, so they are compared without boxing.
+ */
+final class ChangeField {
+
+    enum Kind {
+        BOOLEAN,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        SIMPLE,
+        LIST,
+        NESTED
+    }
+
+    private static final int MAX_LEVEL = 3;
+    private static final String MAPPING_CLASS_NAME = "cl.kanopus.jdbc.entity.Mapping";
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final ClassValue<ChangeField[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected ChangeField[] computeValue(Class<?> type) {
+            List<ChangeField> fields = new ArrayList<>();
+            collectFields(type, 1, fields);
+            return fields.toArray(new ChangeField[0]);
+        }
+    };
+
+    private final String name;
+    private final Kind kind;
+    private final MethodHandle getter;
+    private final MethodHandle valueGetter;
+    private final boolean mayHoldList;
+
+    private ChangeField(Field field) {
+        Class<?> type = field.getType();
+        this.name = field.getName();
+        this.kind = kindOf(type);
+        this.mayHoldList = (kind == Kind.NESTED) && type.isAssignableFrom(List.class);
+        field.setAccessible(true);
+        try {
+            MethodHandle handle = LOOKUP.unreflectGetter(field);
+            Class<?> readType = (kind == Kind.INT) ? int.class : (type.isPrimitive() ? type : Object.class);
+            this.getter = handle.asType(MethodType.methodType(readType, Object.class));
+            this.valueGetter = handle.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access field " + field, e);
+        }
+    }
+
+    /**
+     * Returns the fields of the class and its superclass, superclass fields first. Static fields are not compared.
+     */
+    static ChangeField[] of(Class<?> type) {
+        return FIELDS.get(type);
+    }
+
+    private static void collectFields(Class<?> type, int level, List<ChangeField> fields) {
+        if (type == null || type == Object.class || type.getName().equals(MAPPING_CLASS_NAME) || level == MAX_LEVEL) {
+            return;
+        }
+        collectFields(type.getSuperclass(), level + 1, fields);
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                fields.add(new ChangeField(field));
+            }
+        }
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        } else if (type == int.class || type == short.class || type == byte.class || type == char.class) {
+            return Kind.INT;
+        } else if (type == long.class) {
+            return Kind.LONG;
+        } else if (type == float.class) {
+            return Kind.FLOAT;
+        } else if (type == double.class) {
+            return Kind.DOUBLE;
+        } else if (BeanUtils.isSimpleProperty(type)) {
+            return Kind.SIMPLE;
+        } else if (List.class.isAssignableFrom(type)) {
+            return Kind.LIST;
+        }
+        return Kind.NESTED;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns true if the field is declared with a supertype of {@link List}, so its values must be checked at runtime.
+     */
+    boolean mayHoldList() {
+        return mayHoldList;
+    }
+
+    /**
+     * Returns true if the primitive field has the same value in both objects, with the semantics of the {@code equals} of its wrapper.
+     */
+    boolean primitiveEquals(Object source, Object target) throws Throwable {
+        switch (kind) {
+            case BOOLEAN:
+                return (boolean) getter.invokeExact(source) == (boolean) getter.invokeExact(target);
+            case INT:
+                return (int) getter.invokeExact(source) == (int) getter.invokeExact(target);
+            case LONG:
+                return (long) getter.invokeExact(source) == (long) getter.invokeExact(target);
+            case FLOAT:
+                return Float.floatToIntBits((float) getter.invokeExact(source)) == Float.floatToIntBits((float) getter.invokeExact(target));
+            case DOUBLE:
+                return Double.doubleToLongBits((double) getter.invokeExact(source)) == Double.doubleToLongBits((double) getter.invokeExact(target));
+            default:
+                throw new IllegalStateException("Not a primitive field: " + kind);
+        }
+    }
+
+    /**
+     * Returns the value of the field, boxed if it is primitive.
+     */
+    Object get(Object object) throws Throwable {
+        return (Object) valueGetter.invokeExact(object);
+    }
+}
@@ -24,10 +24,14 @@
 package cl.kanopus.common.util;
 
 import cl.kanopus.common.change.ChangeAction;
+import cl.kanopus.common.change.ChangeAudit;
+import cl.kanopus.common.change.ChangeBatch;
 import cl.kanopus.common.change.Comparator;
-import java.lang.reflect.Field;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.springframework.beans.BeanUtils;
 
 /**
@@ -36,6 +40,11 @@ import org.springframework.beans.BeanUtils;
 @SuppressWarnings("all")
 public class ChangeUtils {
 
+    private static final int MAX_DIFF_DEPTH = 32;
+    private static final int PARALLEL_MIN_CHUNK_SIZE = 256;
+    private static final int UNMATCHED = -1;
+    private static final int IGNORED = -2;
+
     private ChangeUtils() {
     }
 
@@ -84,6 +93,131 @@ public class ChangeUtils {
         return newList;
     }
 
+    /**
+     * Compares two lists whose elements are identified by the key returned by the key extractor.
+     *
+     * <p>
+     * The result has an entry per source element, in source order, with NONE or UPDATE if a target element has its key, or DELETE otherwise; followed by a CREATE entry per remaining target
+     * element, in target order. Elements with duplicated keys are matched in order, elements with a null key are never matched and null elements are ignored.
+     *
+     * @param keyExtractor
+     *            returns the identity of an element, e.g. its id
+     */
+    public static <T, K> List<Comparator<T>> checkChangeOnList(List<T> sourceList, List<T> targetList, Function<? super T, ? extends K> keyExtractor) {
+        List<T> sources = randomAccess(sourceList);
+        List<T> targets = randomAccess(targetList);
+        int[] matches = matchByKey(sources, targets, keyExtractor);
+        ChangeAction[] actions = new ChangeAction[matches.length];
+        checkChangeRange(sources, targets, matches, actions, 0, matches.length);
+        return toComparators(sources, targets, matches, actions);
+    }
+
+    public static <T, K> ChangeBatch<T> checkChangeBatch(List<T> sourceList, List<T> targetList, Function<? super T, ? extends K> keyExtractor) {
+        return checkChangeBatch(sourceList, targetList, keyExtractor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compares two large lists like {@link #checkChangeOnList(List, List, Function)}, comparing the matched elements in parallel.
+     *
+     * <p>
+     * The elements are matched by key in a single pass; the matched pairs are then split in ranges compared by the given executor. The results keep the order of
+     * {@link #checkChangeOnList(List, List, Function)}.
+     *
+     * @param executor
+     *            the executor that compares the ranges, e.g. a fork-join pool or a virtual thread per task executor
+     */
+    public static <T, K> ChangeBatch<T> checkChangeBatch(List<T> sourceList, List<T> targetList, Function<? super T, ? extends K> keyExtractor, Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        List<T> sources = randomAccess(sourceList);
+        List<T> targets = randomAccess(targetList);
+        int[] matches = matchByKey(sources, targets, keyExtractor);
+        ChangeAction[] actions = new ChangeAction[matches.length];
+        ParallelUtils.forEachRange(matches.length, PARALLEL_MIN_CHUNK_SIZE, executor, (from, to) -> checkChangeRange(sources, targets, matches, actions, from, to));
+        return new ChangeBatch<>(toComparators(sources, targets, matches, actions));
+    }
+
+    /**
+     * Returns the list itself if it has fast indexed access, or an array-backed copy otherwise, e.g. of a {@code LinkedList}.
+     */
+    private static <T> List<T> randomAccess(List<T> list) {
+        return (list == null || list instanceof RandomAccess) ? list : new ArrayList<>(list);
+    }
+
+    private static <T> void checkChangeRange(List<T> sourceList, List<T> targetList, int[] matches, ChangeAction[] actions, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (matches[i] >= 0) {
+                actions[i] = checkChange(sourceList.get(i), targetList.get(matches[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns, for each source element, the index of the target element with its key; {@link #UNMATCHED} if there is none, or {@link #IGNORED} if the source element is null.
+     */
+    private static <T, K> int[] matchByKey(List<T> sourceList, List<T> targetList, Function<? super T, ? extends K> keyExtractor) {
+        Objects.requireNonNull(keyExtractor, "keyExtractor");
+        int sourceSize = (sourceList != null) ? sourceList.size() : 0;
+        int targetSize = (targetList != null) ? targetList.size() : 0;
+
+        // key -> first unmatched target index; nextTarget chains the following targets with the same key
+        Map<K, Integer> firstTarget = new HashMap<>((int) (targetSize / 0.75f) + 1);
+        int[] nextTarget = new int[targetSize];
+        for (int i = targetSize - 1; i >= 0; i--) {
+            T target = targetList.get(i);
+            K key = (target != null) ? keyExtractor.apply(target) : null;
+            Integer next = (key != null) ? firstTarget.put(key, i) : null;
+            nextTarget[i] = (next != null) ? next : -1;
+        }
+
+        int[] matches = new int[sourceSize];
+        for (int i = 0; i < sourceSize; i++) {
+            T source = sourceList.get(i);
+            K key = (source != null) ? keyExtractor.apply(source) : null;
+            Integer index = (key != null) ? firstTarget.get(key) : null;
+            if (index == null) {
+                matches[i] = (source != null) ? UNMATCHED : IGNORED;
+            } else {
+                matches[i] = index;
+                if (nextTarget[index] >= 0) {
+                    firstTarget.put(key, nextTarget[index]);
+                } else {
+                    firstTarget.remove(key);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static <T> List<Comparator<T>> toComparators(List<T> sourceList, List<T> targetList, int[] matches, ChangeAction[] actions) {
+        int targetSize = (targetList != null) ? targetList.size() : 0;
+        List<Comparator<T>> newList = new ArrayList<>(matches.length + targetSize);
+        boolean[] matched = new boolean[targetSize];
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] == UNMATCHED) {
+                newList.add(new Comparator<>(ChangeAction.DELETE, sourceList.get(i)));
+            } else if (matches[i] >= 0) {
+                matched[matches[i]] = true;
+                newList.add(new Comparator<>(actions[i], (actions[i] == ChangeAction.UPDATE) ? targetList.get(matches[i]) : sourceList.get(i)));
+            }
+        }
+
+        for (int i = 0; i < targetSize; i++) {
+            T target = targetList.get(i);
+            if (!matched[i] && target != null) {
+                newList.add(new Comparator<>(ChangeAction.CREATE, target));
+            }
+        }
+        return newList;
+    }
+
+    /**
+     * Returns the change from a source object to a target object: CREATE or DELETE if one of them is null, UPDATE if a simple value or a field differs, NONE otherwise.
+     *
+     * <p>
+     * Simple values, arrays and the simple fields of objects are compared with {@link Objects#deepEquals(Object, Object)}, the comparison of {@link #diff(Object, Object)}, so both agree
+     * on every field. Arrays are therefore compared by content: two distinct arrays with the same elements are NONE, where previous versions compared them by identity and reported
+     * UPDATE.
+     */
     public static <T> ChangeAction checkChange(T source, T target) {
 
         ChangeAction action = ChangeAction.NONE;
@@ -94,78 +228,175 @@ public class ChangeUtils {
                 action = ChangeAction.DELETE;
             } else if (source != null && target != null) {
 
-                if (BeanUtils.isSimpleProperty(source.getClass())) {
-                    action = source.equals(target) ? ChangeAction.NONE : ChangeAction.UPDATE;
-                } else {
-                    // Field[] fields = source.getClass().getDeclaredFields();
-                    int level = 1;
-                    List<Field> fields = getAllFields(source.getClass(), level);
-
-                    iterationFields : for (Field f : fields) {
-                        f.setAccessible(true);
-                        if (BeanUtils.isSimpleProperty(f.getType())) {
-                            Object sourceValue = f.get(source);
-                            Object targetValue = f.get(target);
-
-                            if (!((sourceValue == null && targetValue == null) || (sourceValue != null && sourceValue.equals(targetValue)))) {
-                                action = ChangeAction.UPDATE;
-                                break;
-                            }
-                        } else {
-                            Object sourceValue = f.get(source);
-                            Object targetValue = f.get(target);
-
-                            boolean isList = ((sourceValue instanceof List) || (targetValue instanceof List));
-
-                            if (isList) {
-                                List list1 = (List) sourceValue;
-                                List list2 = (List) targetValue;
-
-                                if (list1 != null && list2 != null && list1.size() != list2.size()) {
-                                    action = ChangeAction.UPDATE;
-                                    break;
-                                } else {
-
-                                    HashMap<Integer, Object> mapSource = new HashMap<>();
-                                    if (sourceValue != null) {
-                                        for (Object v : (List) sourceValue) {
-                                            mapSource.put(v.hashCode(), v.hashCode());
-                                        }
-                                    }
-
-                                    if (targetValue != null) {
-                                        for (Object v : (List) targetValue) {
-                                            if (!mapSource.containsKey(v.hashCode())) {
-                                                action = ChangeAction.UPDATE;
-                                                break iterationFields;
-                                            }
-                                        }
-                                    }
-                                }
-                            } else {
-                                if (checkChange(sourceValue, targetValue) != ChangeAction.NONE) {
-                                    action = ChangeAction.UPDATE;
-                                    break;
-                                }
-                            }
-                        }
-                    }
+                if (BeanUtils.isSimpleProperty(source.getClass()) || source.getClass().isArray()) {
+                    action = Objects.deepEquals(source, target) ? ChangeAction.NONE : ChangeAction.UPDATE;
+                } else if (!sameFields(source, target)) {
+                    action = ChangeAction.UPDATE;
                 }
             }
-        } catch (IllegalArgumentException | IllegalAccessException ex) {
+        } catch (IllegalArgumentException | ClassCastException ex) {
+            // the target is not of the class of the source
             action = ChangeAction.NONE;
         }
         return action;
     }
 
-    private static List<Field> getAllFields(Class clazz, int level) {
-        if (clazz == null || clazz == Object.class || clazz.getName().equals("cl.kanopus.jdbc.entity.Mapping") || level == 3) {
-            return Collections.emptyList();
+    /**
+     * Returns the changes between the fields of two objects, one entry per changed field.
+     *
+     * @see #diff(Object, Object, Consumer)
+     */
+    public static <T> List<ChangeAudit> diff(T source, T target) {
+        List<ChangeAudit> changes = new ArrayList<>();
+        diff(source, target, changes::add);
+        return changes;
+    }
+
+    /**
+     * Sends to the consumer the changes between the fields of two objects, without building a list.
+     *
+     * <p>
+     * The property of each entry is the path of the changed field, like {@code name}, {@code other.data} or {@code values[2]}. Nested objects and lists are compared field by field and
+     * element by element; a nested object or element that appears or disappears is reported as a single CREATE or DELETE entry. Values are reported with {@code String.valueOf}, and
+     * compared with {@link Objects#deepEquals(Object, Object)} like {@link #checkChange(Object, Object)} does.
+     *
+     * <p>
+     * Each pair of source and target objects is compared once, so back-references (e.g. a child pointing to its parent entity) are not walked again.
+     */
+    public static <T> void diff(T source, T target, Consumer<ChangeAudit> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        diff("", "", -1, source, target, consumer, new IdentityHashMap<>(), 0);
+    }
+
+    /**
+     * Compares a value at the path {@code parent.name}, or {@code parent[index]} when the name is null; the path string is only built when a change is reported or a nested comparison
+     * starts.
+     */
+    private static void diff(String parent, String name, int index, Object source, Object target, Consumer<ChangeAudit> consumer, Map<Object, Set<Object>> visited, int depth) {
+        if (source == null && target == null) {
+            return;
+        } else if (source == null || target == null) {
+            consumer.accept(new ChangeAudit(path(parent, name, index), (source == null) ? ChangeAction.CREATE : ChangeAction.DELETE, toAuditValue(source), toAuditValue(target)));
+        } else if (source instanceof List && target instanceof List) {
+            diffList(path(parent, name, index), (List<?>) source, (List<?>) target, consumer, visited, depth);
+        } else if (isComparedByEquals(source.getClass()) || !source.getClass().isInstance(target) || depth >= MAX_DIFF_DEPTH) {
+            if (!Objects.deepEquals(source, target)) {
+                consumer.accept(new ChangeAudit(path(parent, name, index), ChangeAction.UPDATE, toAuditValue(source), toAuditValue(target)));
+            }
+        } else if (visited.computeIfAbsent(source, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(target)) {
+            try {
+                String path = path(parent, name, index);
+                for (ChangeField f : ChangeField.of(source.getClass())) {
+                    if (f.getKind() == ChangeField.Kind.SIMPLE || f.getKind() == ChangeField.Kind.LIST || f.getKind() == ChangeField.Kind.NESTED) {
+                        diff(path, f.getName(), -1, f.get(source), f.get(target), consumer, visited, depth + 1);
+                    } else if (!f.primitiveEquals(source, target)) {
+                        consumer.accept(new ChangeAudit(path(path, f.getName(), -1), ChangeAction.UPDATE, toAuditValue(f.get(source)), toAuditValue(f.get(target))));
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
         }
+    }
+
+    private static void diffList(String path, List<?> sourceList, List<?> targetList, Consumer<ChangeAudit> consumer, Map<Object, Set<Object>> visited, int depth) {
+        Iterator<?> sources = sourceList.iterator();
+        Iterator<?> targets = targetList.iterator();
+        for (int i = 0; sources.hasNext() || targets.hasNext(); i++) {
+            Object source = sources.hasNext() ? sources.next() : null;
+            Object target = targets.hasNext() ? targets.next() : null;
+            diff(path, null, i, source, target, consumer, visited, depth + 1);
+        }
+    }
 
-        List<Field> result = new ArrayList<>(getAllFields(clazz.getSuperclass(), level + 1));
-        List<Field> filteredFields = Arrays.stream(clazz.getDeclaredFields()).collect(Collectors.toList());
-        result.addAll(filteredFields);
-        return result;
+    private static String path(String parent, String name, int index) {
+        if (name == null) {
+            return parent + "[" + index + "]";
+        }
+        return parent.isEmpty() ? name : parent + "." + name;
+    }
+
+    /**
+     * Simple values, and JDK types whose fields are not accessible, are compared with equals instead of field by field.
+     */
+    private static boolean isComparedByEquals(Class<?> type) {
+        return BeanUtils.isSimpleProperty(type) || type.isArray() || type.getName().startsWith("java.") || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type);
+    }
+
+    private static String toAuditValue(Object value) {
+        if (value != null && value.getClass().isArray()) {
+            // deepToString of a single element array also formats primitive arrays
+            String text = Arrays.deepToString(new Object[]{value});
+            return text.substring(1, text.length() - 1);
+        }
+        return (value != null) ? String.valueOf(value) : null;
+    }
+
+    private static boolean sameFields(Object source, Object target) {
+        try {
+            for (ChangeField f : ChangeField.of(source.getClass())) {
+                switch (f.getKind()) {
+                    case SIMPLE:
+                        Object sourceValue = f.get(source);
+                        Object targetValue = f.get(target);
+                        if (!Objects.deepEquals(sourceValue, targetValue)) {
+                            return false;
+                        }
+                        break;
+                    case LIST:
+                        if (!sameList((List<?>) f.get(source), (List<?>) f.get(target))) {
+                            return false;
+                        }
+                        break;
+                    case NESTED:
+                        Object sourceNested = f.get(source);
+                        Object targetNested = f.get(target);
+                        if (f.mayHoldList() && ((sourceNested instanceof List) || (targetNested instanceof List))) {
+                            if (!sameList((List<?>) sourceNested, (List<?>) targetNested)) {
+                                return false;
+                            }
+                        } else if (checkChange(sourceNested, targetNested) != ChangeAction.NONE) {
+                            return false;
+                        }
+                        break;
+                    default:
+                        if (!f.primitiveEquals(source, target)) {
+                            return false;
+                        }
+                }
+            }
+            return true;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Lists are the same if they have the same size and every target element has the hash code of some source element.
+     */
+    private static boolean sameList(List<?> sourceList, List<?> targetList) {
+        if (sourceList != null && targetList != null && sourceList.size() != targetList.size()) {
+            return false;
+        }
+        if (targetList == null || targetList.isEmpty()) {
+            return true;
+        }
+
+        Set<Integer> sourceHashes = new HashSet<>((sourceList != null) ? (int) (sourceList.size() / 0.75f) + 1 : 1);
+        if (sourceList != null) {
+            for (Object v : sourceList) {
+                sourceHashes.add(v.hashCode());
+            }
+        }
+        for (Object v : targetList) {
+            if (!sourceHashes.contains(v.hashCode())) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,77 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * State of a single deep copy: the targets already created for each source object, by identity, and the current nesting depth.
+ *
+ * <p>
+ * Reusing the registered targets keeps back-references (e.g. parent/child entities) from recursing forever, and copies a shared sub-object only once, so the copy has the same shape as
+ * the source graph. A context belongs to one copy and is not thread-safe.
+ */
+final class CopyContext {
+
+    static final int MAX_DEPTH = 256;
+
+    private Map<Object, Object> copies;
+    private int depth;
+
+    /**
+     * Returns the target already created for the source object, or null if it was not copied yet or its copy is not of the requested type.
+     */
+    Object getCopy(Object source, Class<?> targetType) {
+        if (copies == null) {
+            return null;
+        }
+        Object copy = copies.get(source);
+        return (copy != null && targetType.isInstance(copy)) ? copy : null;
+    }
+
+    void putCopy(Object source, Object target) {
+        if (copies == null) {
+            copies = new IdentityHashMap<>();
+        }
+        copies.putIfAbsent(source, target);
+    }
+
+    /**
+     * Enters a nested copy.
+     *
+     * @return false if the maximum depth was reached, in which case the nested copy must be skipped and {@link #exit()} not called
+     */
+    boolean enter() {
+        if (depth >= MAX_DEPTH) {
+            return false;
+        }
+        depth++;
+        return true;
+    }
+
+    void exit() {
+        depth--;
+    }
+}
@@ -26,9 +26,9 @@ package cl.kanopus.common.util;
 import cl.kanopus.common.data.ImageBase64;
 import cl.kanopus.common.data.Paginator;
 import cl.kanopus.common.enums.EnumIdentifiable;
-import java.beans.PropertyDescriptor;
 import java.io.StringWriter;
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -36,21 +36,98 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
-import org.springframework.beans.InvalidPropertyException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 @SuppressWarnings("UseSpecificCatch")
 public class KanopusBeanUtils {
 
-    private static final String PROPERTY_PATH_SEPARATOR_REGEXP = "\\.";
-    private static final String PROPERTY_PATH_SEPARATOR = ".";
-
-    private static Map<String, Map> propTranslateMaps = new HashMap<>();
+    private static final ClassValue<Map<Class<?>, Map<String, String>>> TRANSLATIONS = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, Map<String, String>> computeValue(Class<?> sourceClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ClassValue<Map<Class<?>, BeanCopyPlan>> COPY_PLANS = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, BeanCopyPlan> computeValue(Class<?> sourceClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ClassValue<Map<Class<?>, TranslatedCopyPlans>> TRANSLATED_COPY_PLANS = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, TranslatedCopyPlans> computeValue(Class<?> sourceClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ClassValue<Constructor<?>> DEFAULT_CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            return BeanCopyPlan.getDefaultConstructor(type);
+        }
+    };
+    private static final int PARALLEL_MIN_CHUNK_SIZE = 256;
+    private static volatile CopyEngine copyEngine = CopyEngine.REFLECTION;
 
     private KanopusBeanUtils() {
     }
 
+    /**
+     * Registers the default property name translation used when copying objects of the source class into objects of the target class. Keys are source property names and values are target property
+     * names; both may be nested paths such as {@code "address.street"}. The paths are resolved at registration time, so later copies do not look them up again.
+     *
+     * @param sourceClass
+     *            the class of the source objects
+     * @param targetClass
+     *            the class of the target objects
+     * @param propertiesTranslationMap
+     *            the property name translation; it is copied, so later changes to the map are ignored
+     */
+    public static <S, T> void registerTranslation(Class<S> sourceClass, Class<T> targetClass, Map<String, String> propertiesTranslationMap) {
+        Objects.requireNonNull(propertiesTranslationMap, "propertiesTranslationMap");
+        Map<String, String> translationMap = Collections.unmodifiableMap(new LinkedHashMap<>(propertiesTranslationMap));
+        BeanCopyPlan plan = BeanCopyPlan.compile(sourceClass, targetClass, translationMap);
+        TRANSLATIONS.get(sourceClass).put(targetClass, translationMap);
+        COPY_PLANS.get(sourceClass).put(targetClass, plan);
+    }
+
+    /**
+     * Selects the engine used to copy bean properties. Copies that assign new property values always use {@link CopyEngine#REFLECTION}.
+     *
+     * @param engine
+     *            the copy engine; must not be null
+     */
+    public static void setCopyEngine(CopyEngine engine) {
+        copyEngine = Objects.requireNonNull(engine, "engine");
+    }
+
+    public static CopyEngine getCopyEngine() {
+        return copyEngine;
+    }
+
+    /**
+     * Returns a mapper that copies the properties of a source class into a target class using the current {@link CopyEngine}. When the engine is {@link CopyEngine#GENERATED}, the returned mapper
+     * copies the properties of exactly the given classes, so it should not receive subclasses of them.
+     *
+     * @param sourceClass
+     *            the class of the source objects
+     * @param targetClass
+     *            the class of the target objects
+     * @return a reusable, thread-safe mapper
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, T> BeanMapper<S, T> getMapper(Class<S> sourceClass, Class<T> targetClass) {
+        if (copyEngine == CopyEngine.GENERATED) {
+            BeanMapper<?, ?> mapper = getCopyPlan(sourceClass, targetClass, null).getGeneratedMapper();
+            if (mapper != null) {
+                return (BeanMapper<S, T>) mapper;
+            }
+        }
+        return KanopusBeanUtils::copyProperties;
+    }
+
     public static <T> List<T> mergeList(List<T> source, List<T> target) {
         List<T> merged = source;
         if (merged == null) {
@@ -71,7 +148,7 @@ public class KanopusBeanUtils {
     public static <T> T copyProperties(Object source, Class<T> targetClassType) {
         try {
             T target = targetClassType.newInstance();
-            copyPropertiesRecursive(source, target, null, null);
+            copyPropertiesRecursive(source, target, null, null, new CopyContext());
             return target;
         } catch (Exception ex) {
             throw new RuntimeException(ex);
@@ -79,17 +156,18 @@ public class KanopusBeanUtils {
     }
 
     public static void copyProperties(Object source, Object target) {
-        copyPropertiesRecursive(source, target, null, null);
+        copyPropertiesRecursive(source, target, null, null, new CopyContext());
     }
 
     public static void copyProperties(Object source, Object target, BeanProperty newValue) {
         Map<String, BeanProperty> propertiesWithNewValuesMap = new HashMap<>();
         propertiesWithNewValuesMap.put(newValue.getName(), newValue);
-        copyPropertiesRecursive(source, target, null, propertiesWithNewValuesMap);
+        copyPropertiesRecursive(source, target, null, propertiesWithNewValuesMap, new CopyContext());
     }
 
     public static <T, S> Paginator<T> copyPaginator(Paginator<S> sourceList, Class<T> targetClassType) {
         Paginator<T> records = new Paginator<>();
+        records.setRecords(new ArrayList<>(sourceList.getRecords().size()));
         for (S source : sourceList.getRecords()) {
             T target = KanopusBeanUtils.copyProperties(source, targetClassType);
             records.getRecords().add(target);
@@ -103,12 +181,77 @@ public class KanopusBeanUtils {
     }
 
     public static <T, S> List<T> copyList(List<S> sourceList, Class<T> targetClassType, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap) {
-        ArrayList<T> objList = new ArrayList<>();
-        copyPropertiesRecursive(sourceList, objList, targetClassType, propertiesTranslationMap, propertiesWithNewValuesMap);
+        ArrayList<T> objList = new ArrayList<>(sourceList.size());
+        copyPropertiesRecursive(sourceList, objList, targetClassType, propertiesTranslationMap, propertiesWithNewValuesMap, new CopyContext());
         return objList;
     }
 
-    private static void copyPropertiesRecursive(Object source, Object target, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap) {
+    public static <T, S> List<T> copyListParallel(List<S> sourceList, Class<T> targetClassType) {
+        return copyListParallel(sourceList, targetClassType, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Copies a list of objects into a new list of the target type, splitting the work in chunks executed by the given executor. The order of the elements is preserved.
+     *
+     * @param sourceList
+     *            the objects to copy
+     * @param targetClassType
+     *            the type of the copied objects
+     * @param executor
+     *            the executor that copies the chunks, e.g. a fork-join pool or a virtual thread per task executor
+     * @return a fixed-size list with the copied objects
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, S> List<T> copyListParallel(List<S> sourceList, Class<T> targetClassType, Executor executor) {
+        // the ranges read an array, so the source list is walked only once whatever its implementation
+        Object[] source = sourceList.toArray();
+        Object[] copied = new Object[source.length];
+        ParallelUtils.forEachRange(source.length, PARALLEL_MIN_CHUNK_SIZE, executor, (from, to) -> {
+            CopyContext context = new CopyContext();
+            for (int i = from; i < to; i++) {
+                copied[i] = copyElement(source[i], targetClassType, null, null, context);
+            }
+        });
+        return (List<T>) Arrays.asList(copied);
+    }
+
+    /**
+     * Lazily copies the objects of a stream, so the source and the copied objects do not need to be held in memory at the same time.
+     *
+     * @param source
+     *            the objects to copy
+     * @param targetClassType
+     *            the type of the copied objects
+     * @return a stream with the copied objects
+     */
+    public static <T, S> Stream<T> copyStream(Stream<S> source, Class<T> targetClassType) {
+        return source.map(s -> copyElement(s, targetClassType, null, null, new CopyContext()));
+    }
+
+    /**
+     * Lazily copies the objects returned by an iterator; each object is copied when it is requested.
+     *
+     * @param source
+     *            the objects to copy
+     * @param targetClassType
+     *            the type of the copied objects
+     * @return an iterator over the copied objects
+     */
+    public static <T, S> Iterator<T> copyIterator(Iterator<S> source, Class<T> targetClassType) {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return copyElement(source.next(), targetClassType, null, null, new CopyContext());
+            }
+        };
+    }
+
+    private static void copyPropertiesRecursive(Object source, Object target, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
         if (target == null || source == null) {
             return; // none of the objects should be null.
         }
@@ -139,6 +282,13 @@ public class KanopusBeanUtils {
             return;
         }
 
+        // Plain beans are copied through a cached copy plan, which already resolves the
+        // default translation map when none is given.
+        if (!(target instanceof List) && !target.getClass().isArray()) {
+            copyBeanProperties(source, target, propertiesTranslationMap, propertiesWithNewValuesMap, context);
+            return;
+        }
+
         // If the property name translation map is null, try to find a default one
         // previously set in the map of maps.
         if (propertiesTranslationMap == null) {
@@ -148,16 +298,16 @@ public class KanopusBeanUtils {
         // This only works for the top-level elements; attributes are handled elsewhere
         // when their properties are examined.
         if (target instanceof List && source instanceof List) {
-            copyPropertiesRecursive((List<?>) source, (List<?>) target, null, propertiesTranslationMap, propertiesWithNewValuesMap);
+            copyPropertiesRecursive((List<?>) source, (List<?>) target, null, propertiesTranslationMap, propertiesWithNewValuesMap, context);
             return;
         }
 
         // If the source is a list and the target is an array.
-        if (target.getClass().isArray() && !source.getClass().isArray()) {
+        if (!source.getClass().isArray()) {
             // cannot copy arbitrary objects to an array (not supported yet)
             if (source instanceof List) {
                 Class targetElemType = target.getClass().getComponentType();
-                Object[] outArr = copyListToArray((List) source, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap);
+                Object[] outArr = copyListToArray((List) source, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap, context);
                 int len = outArr.length > ((Object[]) target).length ? ((Object[]) target).length : outArr.length;
                 for (int i = 0; i < len; i++) {
                     ((Object[]) target)[i] = outArr[i];
@@ -187,7 +337,7 @@ public class KanopusBeanUtils {
             }
 
             // Use list-copying routine
-            copyPropertiesRecursive(sourceList, targetList, tac, propertiesTranslationMap, propertiesWithNewValuesMap);
+            copyPropertiesRecursive(sourceList, targetList, tac, propertiesTranslationMap, propertiesWithNewValuesMap, context);
 
             // Since source list can be larger than target list and copying may change
             // the target length, prepare to copy elements into the original-sized array.
@@ -195,61 +345,43 @@ public class KanopusBeanUtils {
             for (int i = 0; i < ((Object[]) target).length; i++) {
                 ((Object[]) target)[i] = targetList.get(i);
             }
-            return;
         }
+    }
 
-        BeanWrapper sourceBw = new BeanWrapperImpl(source);
-        BeanWrapper targetBw = new BeanWrapperImpl(target);
+    private static void copyBeanProperties(Object source, Object target, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
+        BeanCopyPlan plan = getCopyPlan(source.getClass(), target.getClass(), propertiesTranslationMap);
+        if (plan.hasNestedProperties()) {
+            // the source may be referenced again by its own properties (e.g. a parent referenced by its children)
+            context.putCopy(source, target);
+        }
+        if (!context.enter()) {
+            // Too deep: the nested object is left as instantiated instead of overflowing the stack.
+            return;
+        }
+        try {
+            copyBeanProperties(plan, source, target, propertiesWithNewValuesMap, context);
+        } finally {
+            context.exit();
+        }
+    }
 
-        /*
-         * To map complex types to simple types and vice-versa, merge the property names from the source class with the keys from the property translation map. Names are stored in a map together with the property type when found.
-         */
-        Map<String, BeanProperty> sourcePropertiesMap = new HashMap<>();
-        // To order property names: declared properties first, followed by those from the
-        // translation map.
-        List<String> propNames = new ArrayList<>();
-        // Obtain the property names of the source class and their types.
-        PropertyDescriptor[] pds = sourceBw.getPropertyDescriptors();
-        for (int j = 0; j < pds.length; j++) {
-            String propName = pds[j].getName();
-            if (propName.equals("class") || propNames.contains(propName)) {
-                continue;
-            }
-            Object propValue;
-            try {
-                propValue = sourceBw.getPropertyValue(propName);
-            } catch (Exception e) {
-                continue;
-            }
-            BeanProperty bp = new BeanProperty(propName, pds[j].getPropertyType(), propValue);
-            sourcePropertiesMap.put(pds[j].getName(), bp);
-            propNames.add(pds[j].getName());
-        }
-        // obtain the property names and types proposed by the translation map.
-        if (propertiesTranslationMap != null) {
-            for (Iterator iterator = propertiesTranslationMap.keySet().iterator(); iterator.hasNext();) {
-                String propName = (String) iterator.next();
-                try {
-                    Object value = sourceBw.getPropertyValue(propName);
-                    Class propType = sourceBw.getPropertyType(propName);
-                    BeanProperty bp = new BeanProperty(propName, propType, value);
-                    sourcePropertiesMap.put(propName, bp);
-                    if (propNames.contains(propName)) {
-                        propNames.remove(propName);
-                    }
-                    propNames.add(propName);
-
-                } catch (Exception e) {
-                    // could not access the property, so it is not added to the map
-                }
+    private static void copyBeanProperties(BeanCopyPlan plan, Object source, Object target, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
+        if (copyEngine == CopyEngine.GENERATED && propertiesWithNewValuesMap == null) {
+            BeanMapperGenerator.GeneratedMapper mapper = plan.getGeneratedMapper();
+            if (mapper != null) {
+                mapper.map(source, target, context);
+                return;
             }
         }
 
-        for (int i = 0; i < propNames.size(); i++) {
-            String sourcePropName = propNames.get(i);
-            BeanProperty bp = sourcePropertiesMap.get(sourcePropName);
-            Class sourcePropType = bp.getType();
-            Object sourcePropValue = bp.getValue();
+        for (BeanCopyPlan.PropertyCopy property : plan.getProperties()) {
+            String sourcePropName = property.getSourceName();
+            Class sourcePropType = property.getSourceType();
+            Object sourcePropValue = property.read(source);
+            if (sourcePropValue == BeanCopyPlan.UNREADABLE) {
+                // could not access the property, so it is not copied
+                continue;
+            }
 
             if (propertiesWithNewValuesMap != null && propertiesWithNewValuesMap.containsKey(sourcePropName)) {
                 BeanProperty newValue = propertiesWithNewValuesMap.get(sourcePropName);
@@ -264,68 +396,37 @@ public class KanopusBeanUtils {
                 continue;
             }
 
-            String targetPropName = sourcePropName;
-            // If a translation map for attribute names is provided, use it to
-            // transform the source property name.
-            if (propertiesTranslationMap != null) {
-                if (propertiesTranslationMap.containsKey(sourcePropName)) {
-                    targetPropName = propertiesTranslationMap.get(sourcePropName);
-                } // If the target has a property with the same name as the source but the
-                  // translation map links that source attribute to a different target attribute,
-                  // skip copying this source property.
-                else if (propertiesTranslationMap.containsValue(targetPropName)) {
-                    continue;
-                }
-            }
-
-            PropertyDescriptor targetDesc;
-            try {
-                // Split the propertyName into an array of elements using the "." separator
-                String[] props = targetPropName.split(PROPERTY_PATH_SEPARATOR_REGEXP);
-                String prop = "";
-                if (props.length > 0) {
-                    for (int j = 0; j < props.length - 1; j++) {
-                        prop = prop + PROPERTY_PATH_SEPARATOR + props[j];
-                        if (j == 0) {
-                            prop = props[j];
-                        }
-                        Class type;
-                        try {
-                            type = targetBw.getPropertyType(prop);
-                        } catch (Exception e) {
-                            continue;
-                        }
-                        Object oldValue = null;
-                        try {
-                            oldValue = targetBw.getPropertyValue(prop);
-                        } catch (InvalidPropertyException e) {
-                            // Null value
-                        }
-                        if (oldValue == null) {
-                            Object obj = org.springframework.beans.BeanUtils.instantiateClass(type);
-                            targetBw.setPropertyValue(prop, obj);
-                        }
-                    }
-                }
-
-                targetDesc = targetBw.getPropertyDescriptor(targetPropName);
-            } catch (InvalidPropertyException e) {
-                continue;
-            }
-
-            // If the target attribute is not writable, move to the next one.
-            if (targetDesc.getWriteMethod() == null) {
-                continue;
-            }
+            copyProperty(property, sourcePropValue, target, plan.getTranslationMap(), propertiesWithNewValuesMap, context);
+        }
+    }
 
-            Class targetPropType = targetDesc.getPropertyType();
-            Object obj = sourcePropValue;
-            if (!org.springframework.beans.BeanUtils.isSimpleProperty(targetPropType)) {
+    static void copyProperty(BeanCopyPlan.PropertyCopy property, Object sourcePropValue, Object target, Map<String, String> propertiesTranslationMap,
+            Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
+        Object owner;
+        try {
+            // Instantiates the null intermediate objects of a nested target property.
+            owner = property.resolveTargetOwner(target);
+        } catch (Exception e) {
+            owner = null;
+        }
+        if (owner == null) {
+            return;
+        }
 
+        Class sourcePropType = property.getSourceType();
+        Class targetPropType = property.getTargetType();
+        Object obj = sourcePropValue;
+        if (!property.isTargetSimple() && property.getTargetConstructor() != null) {
+            Object copy = context.getCopy(sourcePropValue, targetPropType);
+            if (copy != null) {
+                // Already copied in this graph: keep the reference shared (or the cycle closed).
+                obj = copy;
+            } else {
                 try {
-                    obj = org.springframework.beans.BeanUtils.instantiateClass(targetPropType);
+                    obj = org.springframework.beans.BeanUtils.instantiateClass(property.getTargetConstructor());
+                    context.putCopy(sourcePropValue, obj);
                     // TODO: review why translationMap is not passed here
-                    copyPropertiesRecursive(sourcePropValue, obj, null, propertiesWithNewValuesMap);
+                    copyPropertiesRecursive(sourcePropValue, obj, null, propertiesWithNewValuesMap, context);
                 } catch (Exception e1) {
                     // If target initialization fails, continue. The object may be
                     // a complex but copyable type (e.g. Date or BigInteger).
@@ -333,48 +434,48 @@ public class KanopusBeanUtils {
                     // or if it is a list it will be copied as a list.
                 }
             }
+        }
 
-            if (java.util.List.class.isAssignableFrom(targetPropType) && java.util.List.class.isAssignableFrom(sourcePropType)) {
-                // If target is a list and source is also a list...
-                Class targetElemType = KanopusBeanUtils.getGenericDeclaredType(targetBw.getWrappedClass(), targetPropName);
-                obj = new ArrayList<>();
-                copyPropertiesRecursive((List) sourcePropValue, (List) obj, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap);
-            } else if (java.util.List.class.isAssignableFrom(sourcePropType) && targetPropType.isArray()) {
-                // If source is a list and target is an object array...
-                Class targetElemType = targetPropType.getComponentType();
-                obj = copyListToArray((List) sourcePropValue, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap);
-            } else if (sourcePropType.isEnum() && !targetPropType.isEnum() && (sourcePropValue instanceof EnumIdentifiable)) {
-                // If source implements EnumIdentifiable
-                obj = ((EnumIdentifiable) sourcePropValue).getId();
-            } else if (targetPropType.isEnum() && !sourcePropType.isEnum() && EnumIdentifiable.class.isAssignableFrom(targetPropType)) {
-                // If target implements EnumIdentifiable
-                obj = Utils.parseEnum(targetPropType, sourcePropValue);
-            } else if (targetPropType.isEnum() && sourcePropType.isEnum() && sourcePropValue.getClass() != targetPropType.getClass()
-                    && EnumIdentifiable.class.isAssignableFrom(sourcePropValue.getClass())) {
-                // If the target implements EnumIdentifiable
-                obj = Utils.parseEnum(targetPropType, ((EnumIdentifiable) sourcePropValue).getId());
-            } else if (targetPropType == java.util.Date.class && sourcePropValue.getClass() == java.time.LocalDateTime.class) {
-                obj = java.sql.Timestamp.valueOf((LocalDateTime) sourcePropValue);
-            } else if (sourcePropType == java.util.Date.class && targetPropType == java.time.LocalDateTime.class) {
-                obj = Instant.ofEpochMilli(((Date) sourcePropValue).getTime()).atZone(ZoneId.systemDefault()).toLocalDateTime();
-            } else if (sourcePropValue.getClass() == ImageBase64.class && targetPropType == byte[].class) {
-                ImageBase64 so = (ImageBase64) sourcePropValue;
-                obj = Base64.getDecoder().decode(so.getData());
-            } else if (targetPropType == java.util.Date.class
-                    && (sourcePropType != java.util.Date.class && sourcePropValue.getClass() != java.util.Date.class && sourcePropValue.getClass() != java.sql.Timestamp.class)) {
-                continue;
-            }
+        if (java.util.List.class.isAssignableFrom(targetPropType) && java.util.List.class.isAssignableFrom(sourcePropType)) {
+            // If target is a list and source is also a list...
+            Class targetElemType = property.getTargetElementType();
+            obj = new ArrayList<>();
+            copyPropertiesRecursive((List) sourcePropValue, (List) obj, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap, context);
+        } else if (java.util.List.class.isAssignableFrom(sourcePropType) && targetPropType.isArray()) {
+            // If source is a list and target is an object array...
+            Class targetElemType = targetPropType.getComponentType();
+            obj = copyListToArray((List) sourcePropValue, targetElemType, propertiesTranslationMap, propertiesWithNewValuesMap, context);
+        } else if (sourcePropType.isEnum() && !targetPropType.isEnum() && (sourcePropValue instanceof EnumIdentifiable)) {
+            // If source implements EnumIdentifiable
+            obj = ((EnumIdentifiable) sourcePropValue).getId();
+        } else if (targetPropType.isEnum() && !sourcePropType.isEnum() && EnumIdentifiable.class.isAssignableFrom(targetPropType)) {
+            // If target implements EnumIdentifiable
+            obj = Utils.parseEnum(targetPropType, sourcePropValue);
+        } else if (targetPropType.isEnum() && sourcePropType.isEnum() && sourcePropValue.getClass() != targetPropType.getClass()
+                && EnumIdentifiable.class.isAssignableFrom(sourcePropValue.getClass())) {
+            // If the target implements EnumIdentifiable
+            obj = Utils.parseEnum(targetPropType, ((EnumIdentifiable) sourcePropValue).getId());
+        } else if (targetPropType == java.util.Date.class && sourcePropValue.getClass() == java.time.LocalDateTime.class) {
+            obj = java.sql.Timestamp.valueOf((LocalDateTime) sourcePropValue);
+        } else if (sourcePropType == java.util.Date.class && targetPropType == java.time.LocalDateTime.class) {
+            obj = Instant.ofEpochMilli(((Date) sourcePropValue).getTime()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+        } else if (sourcePropValue.getClass() == ImageBase64.class && targetPropType == byte[].class) {
+            ImageBase64 so = (ImageBase64) sourcePropValue;
+            obj = Base64.getDecoder().decode(so.getData());
+        } else if (targetPropType == java.util.Date.class
+                && (sourcePropType != java.util.Date.class && sourcePropValue.getClass() != java.util.Date.class && sourcePropValue.getClass() != java.sql.Timestamp.class)) {
+            return;
+        }
 
-            try {
-                // Finally, copy the attribute value.
-                targetBw.setPropertyValue(targetPropName, obj);
-            } catch (Exception ex) {
-                // Null value
-            }
+        try {
+            // Finally, copy the attribute value.
+            property.write(owner, obj);
+        } catch (Exception ex) {
+            // Null value
         }
     }
 
-    private static <T, S> T[] copyListToArray(List<S> sourceList, Class<T> targetClassType, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap) {
+    private static <T, S> T[] copyListToArray(List<S> sourceList, Class<T> targetClassType, Map<String, String> propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
         Object obj;
         try {
             obj = Array.newInstance(targetClassType, sourceList.size());
@@ -382,7 +483,7 @@ public class KanopusBeanUtils {
             return null; // could not create the array.
         }
         ArrayList<T> objList = new ArrayList<>();
-        copyPropertiesRecursive(sourceList, objList, targetClassType, propertiesTranslationMap, propertiesWithNewValuesMap);
+        copyPropertiesRecursive(sourceList, objList, targetClassType, propertiesTranslationMap, propertiesWithNewValuesMap, context);
 
         // As the array type is not known a priori, cannot call toArray();
         // so iterate the list and fill the array manually.
@@ -393,34 +494,41 @@ public class KanopusBeanUtils {
         return resultArray;
     }
 
-    private static <T, S> void copyPropertiesRecursive(List<S> source, List<T> target, Class<T> targetClass, Map propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap) {
+    private static <T, S> void copyPropertiesRecursive(List<S> source, List<T> target, Class<T> targetClass, Map propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
         for (int i = 0; i < source.size(); i++) {
-            S sourceElem = source.get(i);
+            target.add(copyElement(source.get(i), targetClass, propertiesTranslationMap, propertiesWithNewValuesMap, context));
+        }
+    }
 
-            // If the target class is null, assume it is the same type as the source objects.
-            Class<?> tClass;
-            if (targetClass == null) {
-                tClass = sourceElem.getClass();
-            } else {
-                tClass = targetClass;
-            }
+    private static <T, S> T copyElement(S sourceElem, Class<T> targetClass, Map propertiesTranslationMap, Map<String, BeanProperty> propertiesWithNewValuesMap, CopyContext context) {
+        // If the target class is null, assume it is the same type as the source objects.
+        Class<?> tClass;
+        if (targetClass == null) {
+            tClass = sourceElem.getClass();
+        } else {
+            tClass = targetClass;
+        }
 
-            T targetElem;
-            if (tClass == Object.class || tClass == String.class) {
-                targetElem = (T) sourceElem;
-            } else {
-                try {
-                    targetElem = (T) org.springframework.beans.BeanUtils.instantiateClass(tClass);
-                    copyPropertiesRecursive(sourceElem, targetElem, propertiesTranslationMap, propertiesWithNewValuesMap);
-                } catch (Exception e2) {
-                    targetElem = (T) sourceElem;
+        Constructor<?> ctor = DEFAULT_CONSTRUCTORS.get(tClass);
+        T targetElem;
+        if (tClass == Object.class || tClass == String.class || ctor == null) {
+            targetElem = (T) sourceElem;
+        } else if (sourceElem == null || (targetElem = (T) context.getCopy(sourceElem, tClass)) == null) {
+            try {
+                targetElem = (T) org.springframework.beans.BeanUtils.instantiateClass(ctor);
+                if (sourceElem != null) {
+                    // a null element has no identity to share: each one is copied to its own instance
+                    context.putCopy(sourceElem, targetElem);
                 }
+                copyPropertiesRecursive(sourceElem, targetElem, propertiesTranslationMap, propertiesWithNewValuesMap, context);
+            } catch (Exception e2) {
+                targetElem = (T) sourceElem;
             }
-            target.add(targetElem);
         }
+        return targetElem;
     }
 
-    private static Class getGenericDeclaredType(Class parentClass, String propertyName) {
+    static Class getGenericDeclaredType(Class parentClass, String propertyName) {
         if (parentClass == null || propertyName == null || "".equals(propertyName)) {
             return null;
         }
@@ -441,9 +549,75 @@ public class KanopusBeanUtils {
         return Object.class;
     }
 
-    private static Map<String, String> getPropertiesTranslationMap(Class sourceClass, Class targetClass) {
-        String key = sourceClass.getSimpleName() + "_" + targetClass.getSimpleName();
-        return propTranslateMaps.get(key);
+    private static BeanCopyPlan getCopyPlan(Class<?> sourceClass, Class<?> targetClass, Map<String, String> propertiesTranslationMap) {
+        if (propertiesTranslationMap == null) {
+            return COPY_PLANS.get(sourceClass).computeIfAbsent(targetClass, t -> BeanCopyPlan.compile(sourceClass, t, getPropertiesTranslationMap(sourceClass, t)));
+        }
+        TranslatedCopyPlans plans = TRANSLATED_COPY_PLANS.get(sourceClass).computeIfAbsent(targetClass, t -> new TranslatedCopyPlans());
+        return plans.get(sourceClass, targetClass, propertiesTranslationMap);
+    }
+
+    private static Map<String, String> getPropertiesTranslationMap(Class<?> sourceClass, Class<?> targetClass) {
+        return TRANSLATIONS.get(sourceClass).get(targetClass);
+    }
+
+    /**
+     * Engines available to copy bean properties.
+     */
+    public enum CopyEngine {
+        /** Copies the properties through cached method handles. */
+        REFLECTION,
+        /**
+         * Copies the properties through a class generated on first use for each pair of classes. Properties of the same simple type are copied with straight-line getter and setter calls, the
+         * remaining ones are delegated to the {@link #REFLECTION} engine. Classes that cannot be accessed from the generated class always use the {@link #REFLECTION} engine.
+         */
+        GENERATED
+    }
+
+    /**
+     * Plans compiled for the translation maps given to the copies between a pair of classes, at most {@link #MAX_PLANS}, the oldest dropped first. A map is found by identity, as callers
+     * usually pass the same map, then by content; each plan keeps its own copy of the map, so later changes made by the caller do not affect the cache.
+     */
+    private static final class TranslatedCopyPlans {
+
+        private static final int MAX_PLANS = 16;
+
+        private volatile TranslatedCopyPlan[] plans = new TranslatedCopyPlan[0];
+
+        private BeanCopyPlan get(Class<?> sourceClass, Class<?> targetClass, Map<String, String> translationMap) {
+            TranslatedCopyPlan[] current = plans;
+            for (TranslatedCopyPlan cached : current) {
+                if (cached.callerMap == translationMap && cached.plan.getTranslationMap().equals(translationMap)) {
+                    return cached.plan;
+                }
+            }
+            for (TranslatedCopyPlan cached : current) {
+                if (cached.plan.getTranslationMap().equals(translationMap)) {
+                    return cached.plan;
+                }
+            }
+
+            BeanCopyPlan plan = BeanCopyPlan.compile(sourceClass, targetClass, Collections.unmodifiableMap(new LinkedHashMap<>(translationMap)));
+            synchronized (this) {
+                TranslatedCopyPlan[] previous = plans;
+                TranslatedCopyPlan[] next = new TranslatedCopyPlan[Math.min(previous.length + 1, MAX_PLANS)];
+                next[0] = new TranslatedCopyPlan(translationMap, plan);
+                System.arraycopy(previous, 0, next, 1, next.length - 1);
+                plans = next;
+            }
+            return plan;
+        }
+    }
+
+    private static final class TranslatedCopyPlan {
+
+        private final Map<String, String> callerMap;
+        private final BeanCopyPlan plan;
+
+        private TranslatedCopyPlan(Map<String, String> callerMap, BeanCopyPlan plan) {
+            this.callerMap = callerMap;
+            this.plan = plan;
+        }
     }
 
     public static class BeanProperty {
@@ -0,0 +1,94 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Splits the work on the indexes of a large list or array in ranges run in parallel by an executor, as the batch methods of {@link KanopusBeanUtils}, {@link ChangeUtils} and
+ * {@link cl.kanopus.common.util.crypto.CryptoEngine} do.
+ *
+ * <p>
+ * Internal helper of this library: it is public only so that the {@code crypto} package can use it, and it is not part of the supported API.
+ */
+public final class ParallelUtils {
+
+    private ParallelUtils() {
+    }
+
+    /**
+     * The work on a range of indexes, from inclusive to exclusive.
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs a task on the indexes from 0 to size, split in up to 4 ranges per processor of at least the given number of indexes each, and waits for all of them. When the work is too small
+     * to be split it runs in the calling thread.
+     *
+     * @param minChunkSize
+     *            the smallest range worth a task of its own
+     * @param executor
+     *            the executor that runs the ranges, e.g. a fork-join pool or a virtual thread per task executor
+     * @throws IllegalArgumentException
+     *             if the size is negative, the minimum chunk size is not positive, or the executor or task is null
+     * @throws RuntimeException
+     *             the exception or error thrown by a range, unwrapped from the {@link CompletionException}
+     */
+    public static void forEachRange(int size, int minChunkSize, Executor executor, RangeTask task) {
+        AssertUtils.assertTrue(size >= 0, "size must not be negative: " + size);
+        AssertUtils.assertTrue(minChunkSize > 0, "minChunkSize must be positive: " + minChunkSize);
+        AssertUtils.assertNotNull(executor, "executor must not be null");
+        AssertUtils.assertNotNull(task, "task must not be null");
+
+        int chunks = Math.min(size / minChunkSize, Runtime.getRuntime().availableProcessors() * 4);
+        if (chunks <= 1) {
+            task.run(0, size);
+            return;
+        }
+
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) size * c / chunks);
+            int to = (int) ((long) size * (c + 1) / chunks);
+            tasks[c] = CompletableFuture.runAsync(() -> task.run(from, to), executor);
+        }
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
@@ -24,10 +24,16 @@
 package cl.kanopus.common.util.crypto;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.GCMParameterSpec;
@@ -40,13 +46,34 @@ class CryptoAesGcm {
     private static final SecureRandom RNG = new SecureRandom();
     private static final String KDF_ALG = "PBKDF2WithHmacSHA256";
     private static final int KDF_ITERATIONS = 210_000; // adjust according to SLO
+    // bound on the iterations read from a value, with room to raise KDF_ITERATIONS while the values written before stay readable
+    private static final int MAX_KDF_ITERATIONS = 2_000_000;
     private static final int KDF_KEY_LEN_BITS = 256;
 
     private static final String AES_TRANSFORM = "AES/GCM/NoPadding";
     private static final int GCM_TAG_LEN_BITS = 128; // 16 bytes
     private static final int SALT_LEN_BYTES = 16; // per-message salt
+    private static final int MAX_SALT_LEN_BYTES = 64;
     private static final int IV_LEN_BYTES = 12; // recommended for GCM
 
+    // ===== v2 key hierarchy: PBKDF2 master key once per salt, HKDF data key per message =====
+    private static final String HMAC_ALG = "HmacSHA256";
+    private static final int NONCE_LEN_BYTES = 16; // per-message data key
+    private static final byte[] HKDF_INFO = "kanopus:aes-gcm:v2".getBytes(StandardCharsets.US_ASCII);
+    // used when no master salt is configured; a new one per process means a new master key to derive per deploy
+    private static final byte[] PROCESS_MASTER_SALT = newSalt();
+    private static final int MAX_MASTER_KEYS = 64;
+    // Cipher and Mac instances are reused, since looking them up costs more than encrypting a short value
+    private static final int MAX_POOLED = 4 * Runtime.getRuntime().availableProcessors();
+    private static final CryptoPool<Cipher> CIPHERS = new CryptoPool<>(() -> Cipher.getInstance(AES_TRANSFORM), MAX_POOLED);
+    private static final CryptoPool<Mac> MACS = new CryptoPool<>(() -> Mac.getInstance(HMAC_ALG), MAX_POOLED);
+    private static final Map<MasterKeyId, byte[]> MASTER_KEYS = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MasterKeyId, byte[]> eldest) {
+            return size() > MAX_MASTER_KEYS;
+        }
+    });
+
     private CryptoAesGcm() {
     }
 
@@ -56,11 +83,15 @@ class CryptoAesGcm {
      * Encrypts plaintext and returns an encoded string with metadata.
      *
      * <p>
-     * Format: v1:pbkdf2:iter:saltB64:ivB64:cipherB64
+     * Format: v2:hkdf:iter:masterSaltB64:nonceB64:ivB64:cipherB64
+     *
+     * <p>
+     * The master key is derived from the passphrase and the master salt of the process with PBKDF2 once, and cached; the key of each message is derived from the master key and a random
+     * nonce with HKDF, so encrypting costs microseconds instead of a PBKDF2 run. The header is authenticated as associated data.
      *
      * @param plaintext
      *            the UTF-8 plaintext to encrypt; must not be null
-     * @return a compact encoded ciphertext string containing KDF parameters, salt, iv and ciphertext
+     * @return a compact encoded ciphertext string containing KDF parameters, salts, iv and ciphertext
      * @throws IllegalStateException
      *             if the encryption passphrase has not been set
      * @throws RuntimeException
@@ -69,6 +100,48 @@ class CryptoAesGcm {
     public static String encrypt(char[] encryptKey, String plaintext) {
         Objects.requireNonNull(plaintext, "plaintext");
         Objects.requireNonNull(encryptKey, "encrypt key is required in CryptoAesGcm.encryptKey");
+        return encrypt(currentMasterKey(fingerprint(encryptKey), encryptKey, PROCESS_MASTER_SALT), PROCESS_MASTER_SALT, plaintext);
+    }
+
+    /**
+     * Encrypts plaintext in the v2 format with the master key returned by {@link #currentMasterKey(byte[], char[], byte[])} for the same master salt.
+     */
+    static String encrypt(byte[] masterKey, byte[] masterSalt, String plaintext) {
+        return encrypt(masterKey, masterSalt, KDF_ITERATIONS, plaintext);
+    }
+
+    /**
+     * Encrypts plaintext in the v2 format with a master key derived with another iteration count, as values written by a version with another {@code KDF_ITERATIONS}.
+     */
+    static String encryptV2(char[] encryptKey, int iterations, String plaintext) {
+        byte[] masterSalt = newSalt();
+        return encrypt(deriveAesKey(encryptKey, masterSalt, iterations).getEncoded(), masterSalt, iterations, plaintext);
+    }
+
+    private static String encrypt(byte[] masterKey, byte[] masterSalt, int iterations, String plaintext) {
+        Objects.requireNonNull(plaintext, "plaintext");
+
+        byte[] nonce = new byte[NONCE_LEN_BYTES];
+        byte[] iv = new byte[IV_LEN_BYTES];
+        RNG.nextBytes(nonce);
+        RNG.nextBytes(iv);
+
+        String header = "v2:hkdf:" + iterations + ":" + encode(masterSalt) + ":" + encode(nonce);
+        SecretKey sk = deriveDataKey(masterKey, nonce);
+        byte[] cipher = gcmEncrypt(sk, iv, plaintext.getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.US_ASCII));
+
+        return header + ":" + encode(iv) + ":" + encode(cipher);
+    }
+
+    /**
+     * Encrypts plaintext in the v1 format, deriving the key with PBKDF2 for each message.
+     *
+     * <p>
+     * Format: v1:pbkdf2:iter:saltB64:ivB64:cipherB64
+     */
+    static String encryptV1(char[] encryptKey, String plaintext) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        Objects.requireNonNull(encryptKey, "encrypt key is required in CryptoAesGcm.encryptKey");
 
         byte[] salt = new byte[SALT_LEN_BYTES];
         byte[] iv = new byte[IV_LEN_BYTES];
@@ -76,17 +149,13 @@ class CryptoAesGcm {
         RNG.nextBytes(iv);
 
         SecretKey sk = deriveAesKey(encryptKey, salt, KDF_ITERATIONS);
-        byte[] cipher = gcmEncrypt(sk, iv, plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] cipher = gcmEncrypt(sk, iv, plaintext.getBytes(StandardCharsets.UTF_8), null);
 
-        String saltB64 = Base64.getUrlEncoder().withoutPadding().encodeToString(salt);
-        String ivB64 = Base64.getUrlEncoder().withoutPadding().encodeToString(iv);
-        String cB64 = Base64.getUrlEncoder().withoutPadding().encodeToString(cipher);
-
-        return "v1:pbkdf2:" + KDF_ITERATIONS + ":" + saltB64 + ":" + ivB64 + ":" + cB64;
+        return "v1:pbkdf2:" + KDF_ITERATIONS + ":" + encode(salt) + ":" + encode(iv) + ":" + encode(cipher);
     }
 
     /**
-     * Decrypts a string previously produced by {@link #encrypt(char[], String)}.
+     * Decrypts a string previously produced by {@link #encrypt(char[], String)}, in the v2 format or in the v1 format of previous versions.
      *
      * @param encoded
      *            the encoded ciphertext string produced by {@link #encrypt(char[], String)}; must not be null
@@ -99,24 +168,160 @@ class CryptoAesGcm {
      *             if decryption fails (possible tampering or wrong key)
      */
     public static String decrypt(char[] encryptKey, String encoded) {
+        return decrypt(encryptKey, null, encoded);
+    }
+
+    /**
+     * Decrypts with the fingerprint of the passphrase already computed, or null to compute it when needed.
+     */
+    static String decrypt(char[] encryptKey, byte[] fingerprint, String encoded) {
         Objects.requireNonNull(encoded, "encoded");
         Objects.requireNonNull(encryptKey, "encrypt key is required in CryptoAesGcm.decrypt");
 
         String[] parts = encoded.split(":");
+        if (parts.length == 7 && parts[0].equals("v2") && parts[1].equals("hkdf")) {
+            // a forged or corrupt value must not cost a PBKDF2 run of its choice
+            int iterations = checkIterations(Integer.parseInt(parts[2]));
+            byte[] masterSalt = checkLength(Base64.getUrlDecoder().decode(parts[3]), SALT_LEN_BYTES, MAX_SALT_LEN_BYTES, "master salt");
+            byte[] nonce = checkLength(Base64.getUrlDecoder().decode(parts[4]), NONCE_LEN_BYTES, NONCE_LEN_BYTES, "nonce");
+            byte[] iv = checkLength(Base64.getUrlDecoder().decode(parts[5]), IV_LEN_BYTES, IV_LEN_BYTES, "iv");
+            byte[] cipherBytes = Base64.getUrlDecoder().decode(parts[6]);
+            byte[] header = encoded.substring(0, encoded.length() - parts[5].length() - parts[6].length() - 2).getBytes(StandardCharsets.US_ASCII);
+
+            MasterKeyId id = new MasterKeyId((fingerprint != null) ? fingerprint : fingerprint(encryptKey), masterSalt, iterations);
+            byte[] masterKey = MASTER_KEYS.get(id);
+            boolean cached = (masterKey != null);
+            if (!cached) {
+                masterKey = deriveAesKey(encryptKey, masterSalt, iterations).getEncoded();
+            }
+            byte[] plain = gcmDecrypt(deriveDataKey(masterKey, nonce), iv, cipherBytes, header);
+            if (!cached) {
+                // the salt comes from the value: its key is only kept once the tag proves the value was written with this passphrase
+                MASTER_KEYS.put(id, masterKey);
+            }
+            return new String(plain, StandardCharsets.UTF_8);
+        }
         if (parts.length != 6 || !parts[0].equals("v1") || !parts[1].equals("pbkdf2")) {
             throw new IllegalArgumentException("Unsupported ciphertext format");
         }
 
-        int iterations = Integer.parseInt(parts[2]);
+        int iterations = checkIterations(Integer.parseInt(parts[2]));
         byte[] salt = Base64.getUrlDecoder().decode(parts[3]);
         byte[] iv = Base64.getUrlDecoder().decode(parts[4]);
         byte[] cipherBytes = Base64.getUrlDecoder().decode(parts[5]);
 
         SecretKey sk = deriveAesKey(encryptKey, salt, iterations);
-        byte[] plain = gcmDecrypt(sk, iv, cipherBytes);
+        byte[] plain = gcmDecrypt(sk, iv, cipherBytes, null);
         return new String(plain, StandardCharsets.UTF_8);
     }
 
+    /**
+     * Returns the PBKDF2 master key used to encrypt with a master salt, or with the salt of this process if it is null, from a bounded LRU cache shared with decryption. The cache is
+     * keyed by a SHA-256 fingerprint of the passphrase, so it holds no copy of the passphrase itself.
+     */
+    static byte[] currentMasterKey(byte[] fingerprint, char[] pass, byte[] masterSalt) {
+        MasterKeyId id = new MasterKeyId(fingerprint, (masterSalt != null) ? masterSalt : PROCESS_MASTER_SALT, KDF_ITERATIONS);
+        byte[] key = MASTER_KEYS.get(id);
+        if (key == null) {
+            // derived outside the lock, two threads may derive the same key once
+            key = deriveAesKey(pass, id.salt, KDF_ITERATIONS).getEncoded();
+            MASTER_KEYS.put(id, key);
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether the master key of a passphrase fingerprint and master salt is cached.
+     */
+    static boolean isMasterKeyCached(byte[] fingerprint, byte[] masterSalt) {
+        return MASTER_KEYS.containsKey(new MasterKeyId(fingerprint, masterSalt, KDF_ITERATIONS));
+    }
+
+    /**
+     * Returns the master salt used when none is configured.
+     */
+    static byte[] processMasterSalt() {
+        return PROCESS_MASTER_SALT;
+    }
+
+    /**
+     * Returns a new random master salt, encoded to be stored alongside the passphrase.
+     */
+    static String newMasterSalt() {
+        return encode(newSalt());
+    }
+
+    /**
+     * Decodes a master salt returned by {@link #newMasterSalt()}.
+     *
+     * @throws IllegalArgumentException
+     *             if it is not Base64 or too short or long
+     */
+    static byte[] decodeMasterSalt(String encoded) {
+        Objects.requireNonNull(encoded, "master salt");
+        return checkLength(Base64.getUrlDecoder().decode(encoded), SALT_LEN_BYTES, MAX_SALT_LEN_BYTES, "master salt");
+    }
+
+    private static int checkIterations(int iterations) {
+        if (iterations < 1 || iterations > MAX_KDF_ITERATIONS) {
+            throw new IllegalArgumentException("Unsupported KDF iterations: " + iterations);
+        }
+        return iterations;
+    }
+
+    private static byte[] checkLength(byte[] bytes, int min, int max, String name) {
+        if (bytes.length < min || bytes.length > max) {
+            throw new IllegalArgumentException("Invalid " + name + " length: " + bytes.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * HKDF (RFC 5869) with HMAC-SHA256: extracts a pseudorandom key from the master key with the nonce as salt, then expands it into an AES-256 key.
+     */
+    private static SecretKey deriveDataKey(byte[] masterKey, byte[] nonce) {
+        Mac mac = null;
+        try {
+            mac = MACS.borrow();
+            mac.init(new SecretKeySpec(nonce, HMAC_ALG));
+            byte[] prk = mac.doFinal(masterKey);
+            mac.init(new SecretKeySpec(prk, HMAC_ALG));
+            mac.update(HKDF_INFO);
+            mac.update((byte) 1);
+            // a single block of HMAC-SHA256 output is the 256-bit key
+            return new SecretKeySpec(mac.doFinal(), "AES");
+        } catch (Exception e) {
+            throw new CryptoException("HKDF failed", e);
+        } finally {
+            if (mac != null) {
+                MACS.release(mac);
+            }
+        }
+    }
+
+    static byte[] fingerprint(char[] pass) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (char c : pass) {
+                digest.update((byte) (c >> 8));
+                digest.update((byte) c);
+            }
+            return digest.digest();
+        } catch (Exception e) {
+            throw new CryptoException("Fingerprint failed", e);
+        }
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LEN_BYTES];
+        RNG.nextBytes(salt);
+        return salt;
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
     private static SecretKey deriveAesKey(char[] pass, byte[] salt, int iterations) {
         try {
             PBEKeySpec spec = new PBEKeySpec(pass, salt, iterations, KDF_KEY_LEN_BITS);
@@ -128,23 +333,39 @@ class CryptoAesGcm {
         }
     }
 
-    private static byte[] gcmEncrypt(SecretKey key, byte[] iv, byte[] plaintext) {
+    private static byte[] gcmEncrypt(SecretKey key, byte[] iv, byte[] plaintext, byte[] aad) {
+        Cipher cipher = null;
         try {
-            Cipher cipher = Cipher.getInstance(AES_TRANSFORM);
+            cipher = CIPHERS.borrow();
             cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LEN_BITS, iv));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
             return cipher.doFinal(plaintext);
         } catch (Exception e) {
             throw new CryptoException("AES-GCM encrypt failed", e);
+        } finally {
+            if (cipher != null) {
+                CIPHERS.release(cipher);
+            }
         }
     }
 
-    private static byte[] gcmDecrypt(SecretKey key, byte[] iv, byte[] ciphertext) {
+    private static byte[] gcmDecrypt(SecretKey key, byte[] iv, byte[] ciphertext, byte[] aad) {
+        Cipher cipher = null;
         try {
-            Cipher cipher = Cipher.getInstance(AES_TRANSFORM);
+            cipher = CIPHERS.borrow();
             cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LEN_BITS, iv));
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
             return cipher.doFinal(ciphertext);
         } catch (Exception e) {
             throw new CryptoException("AES-GCM decrypt failed (tampered or wrong key)", e);
+        } finally {
+            if (cipher != null) {
+                CIPHERS.release(cipher);
+            }
         }
     }
 
@@ -234,4 +455,34 @@ class CryptoAesGcm {
             r |= a[i] ^ b[i];
         return r == 0;
     }
+
+    /**
+     * Identifies a master key by passphrase fingerprint, salt and iteration count.
+     */
+    private static final class MasterKeyId {
+
+        private final byte[] fingerprint;
+        private final byte[] salt;
+        private final int iterations;
+
+        private MasterKeyId(byte[] fingerprint, byte[] salt, int iterations) {
+            this.fingerprint = fingerprint;
+            this.salt = salt;
+            this.iterations = iterations;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MasterKeyId)) {
+                return false;
+            }
+            MasterKeyId other = (MasterKeyId) o;
+            return iterations == other.iterations && Arrays.equals(fingerprint, other.fingerprint) && Arrays.equals(salt, other.salt);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(fingerprint) + Arrays.hashCode(salt)) + iterations;
+        }
+    }
 }
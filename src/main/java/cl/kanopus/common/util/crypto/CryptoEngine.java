@@ -0,0 +1,194 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import cl.kanopus.common.util.ParallelUtils;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * AES-GCM encryption with a passphrase, keeping the work that depends only on the passphrase: its PBKDF2 master key is derived once, when the engine is created, and each message
+ * then costs an HKDF derivation and an AES-GCM operation. The {@link javax.crypto.Cipher} and {@link javax.crypto.Mac} instances are borrowed from lock-free pools shared by all the
+ * engines, so an engine is safe to use from any number of threads, virtual threads included.
+ *
+ * <p>
+ * The values are in the format of {@link CryptographyUtils#encrypt(String)}, so both can decrypt each other's values.
+ *
+ * <p>
+ * The batch methods, e.g. {@link #encryptAll(List, Executor)}, split a list in chunks processed by an executor and keep the order of the values. Null values stay null, as empty
+ * columns of a table do.
+ *
+ * @see CryptographyUtils#newEngine(String)
+ */
+public final class CryptoEngine {
+
+    // an AES-GCM value costs tens of microseconds, so smaller chunks than for bean copies pay off
+    private static final int PARALLEL_MIN_CHUNK_SIZE = 32;
+
+    private final char[] source;
+    private final char[] passphrase;
+    private final byte[] fingerprint;
+    private final byte[] sourceSalt;
+    private final byte[] masterSalt;
+    private final byte[] masterKey;
+
+    CryptoEngine(char[] passphrase) {
+        this(passphrase, null);
+    }
+
+    /**
+     * @param masterSalt
+     *            the master salt the values are encrypted with, or null to use the salt of this process
+     */
+    CryptoEngine(char[] passphrase, byte[] masterSalt) {
+        Objects.requireNonNull(passphrase, "encrypt key is required in CryptoEngine");
+        this.source = passphrase;
+        this.passphrase = Arrays.copyOf(passphrase, passphrase.length);
+        this.fingerprint = CryptoAesGcm.fingerprint(this.passphrase);
+        this.sourceSalt = masterSalt;
+        this.masterSalt = (masterSalt != null) ? masterSalt.clone() : CryptoAesGcm.processMasterSalt();
+        this.masterKey = CryptoAesGcm.currentMasterKey(fingerprint, this.passphrase, this.masterSalt);
+    }
+
+    /**
+     * @see CryptographyUtils#encrypt(String)
+     */
+    public String encrypt(String plaintext) {
+        return CryptoAesGcm.encrypt(masterKey, masterSalt, plaintext);
+    }
+
+    /**
+     * @see CryptographyUtils#decrypt(String)
+     */
+    public String decrypt(String encoded) {
+        return CryptoAesGcm.decrypt(passphrase, fingerprint, encoded);
+    }
+
+    public List<String> encryptAll(List<String> plaintexts) {
+        return encryptAll(plaintexts, defaultExecutor());
+    }
+
+    /**
+     * Encrypts a list of values in parallel, failing fast: the first error stops the remaining chunks and is thrown.
+     *
+     * @param plaintexts
+     *            the values to encrypt
+     * @param executor
+     *            the executor that encrypts the chunks, e.g. a fork-join pool or a virtual thread per task executor
+     * @return the encrypted values, in the order of the plaintexts
+     */
+    public List<String> encryptAll(List<String> plaintexts, Executor executor) {
+        return mapAll(plaintexts, plaintext -> (plaintext != null) ? encrypt(plaintext) : null, executor);
+    }
+
+    public List<String> decryptAll(List<String> encoded) {
+        return decryptAll(encoded, defaultExecutor());
+    }
+
+    /**
+     * Decrypts a list of values in parallel, failing fast.
+     *
+     * @see #encryptAll(List, Executor)
+     */
+    public List<String> decryptAll(List<String> encoded, Executor executor) {
+        return mapAll(encoded, value -> (value != null) ? decrypt(value) : null, executor);
+    }
+
+    /**
+     * Encrypts a list of values in parallel, collecting the error of each value instead of failing.
+     *
+     * @return a result per value, in the order of the plaintexts
+     */
+    public List<CryptoResult> tryEncryptAll(List<String> plaintexts, Executor executor) {
+        return mapAll(plaintexts, plaintext -> attempt(this::encrypt, plaintext), executor);
+    }
+
+    /**
+     * Decrypts a list of values in parallel, collecting the error of each value instead of failing, e.g. to report the rows of an export that could not be decrypted.
+     *
+     * @return a result per value, in the order of the encoded values
+     */
+    public List<CryptoResult> tryDecryptAll(List<String> encoded, Executor executor) {
+        return mapAll(encoded, value -> attempt(this::decrypt, value), executor);
+    }
+
+    /**
+     * Lazily encrypts the values of a stream, in parallel if the stream is parallel.
+     */
+    public Stream<String> encryptStream(Stream<String> plaintexts) {
+        return plaintexts.map(plaintext -> (plaintext != null) ? encrypt(plaintext) : null);
+    }
+
+    /**
+     * Lazily decrypts the values of a stream, in parallel if the stream is parallel.
+     */
+    public Stream<String> decryptStream(Stream<String> encoded) {
+        return encoded.map(value -> (value != null) ? decrypt(value) : null);
+    }
+
+    private static Executor defaultExecutor() {
+        // without parallelism the common pool starts a thread per task, so the chunks run in the caller
+        return (ForkJoinPool.getCommonPoolParallelism() > 1) ? ForkJoinPool.commonPool() : Runnable::run;
+    }
+
+    private static CryptoResult attempt(Function<String, String> operation, String value) {
+        try {
+            return CryptoResult.success((value != null) ? operation.apply(value) : null);
+        } catch (RuntimeException e) {
+            return CryptoResult.failure(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> mapAll(List<String> values, Function<String, R> operation, Executor executor) {
+        // the ranges read an array, so the values are walked only once whatever the list implementation
+        Object[] input = values.toArray();
+        Object[] results = new Object[input.length];
+        AtomicBoolean failed = new AtomicBoolean();
+        ParallelUtils.forEachRange(input.length, PARALLEL_MIN_CHUNK_SIZE, executor, (from, to) -> {
+            for (int i = from; i < to && !failed.get(); i++) {
+                try {
+                    results[i] = operation.apply((String) input[i]);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                }
+            }
+        });
+        return (List<R>) Arrays.asList(results);
+    }
+
+    /**
+     * Returns whether this engine was created from the given arrays, which hold the configured passphrase and master salt.
+     */
+    boolean hasConfiguration(char[] passphrase, byte[] masterSalt) {
+        return source == passphrase && sourceSalt == masterSalt;
+    }
+}
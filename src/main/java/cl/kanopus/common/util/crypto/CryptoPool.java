@@ -0,0 +1,75 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of JCA instances such as {@link javax.crypto.Cipher} or {@link javax.crypto.Mac}, which are expensive to look up and not thread safe. The pool takes no lock, so it
+ * does not pin virtual threads, and keeps at most {@code max} idle instances however many threads use it.
+ *
+ * @param <T>
+ *            the type of the pooled instances
+ */
+final class CryptoPool<T> {
+
+    @FunctionalInterface
+    interface Factory<T> {
+
+        T create() throws GeneralSecurityException;
+    }
+
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Factory<T> factory;
+    private final int max;
+
+    CryptoPool(Factory<T> factory, int max) {
+        this.factory = factory;
+        this.max = max;
+    }
+
+    /**
+     * Takes an idle instance, or creates one. The caller must initialize it before use, and give it back with {@link #release(Object)}.
+     */
+    T borrow() throws GeneralSecurityException {
+        T instance = idle.poll();
+        if (instance == null) {
+            return factory.create();
+        }
+        idleCount.decrementAndGet();
+        return instance;
+    }
+
+    void release(T instance) {
+        if (idleCount.incrementAndGet() <= max) {
+            idle.offer(instance);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+/**
+ * Result of encrypting or decrypting one value of a batch: the value, or the error that prevented it, so one bad value does not fail the whole batch.
+ *
+ * @see CryptoEngine#tryDecryptAll(java.util.List, java.util.concurrent.Executor)
+ */
+public final class CryptoResult {
+
+    private final String value;
+    private final RuntimeException error;
+
+    private CryptoResult(String value, RuntimeException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    static CryptoResult success(String value) {
+        return new CryptoResult(value, null);
+    }
+
+    static CryptoResult failure(RuntimeException error) {
+        return new CryptoResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the encrypted or decrypted value, null if it failed or if the input was null.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the error, e.g. a {@link CryptoException} for a tampered value or an {@link IllegalArgumentException} for a malformed one, or null if it succeeded.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "CryptoResult[success]" : "CryptoResult[error=" + error + "]";
+    }
+}
@@ -23,6 +23,10 @@
  */
 package cl.kanopus.common.util.crypto;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
 /**
  * Utility class that allows information to be encrypted and decrypted based on the use of seeds.
  *
@@ -33,7 +37,10 @@ public class CryptographyUtils {
 
     // State: passphrase (avoid String when possible; use char[])
     private static char[] encryptKey;
+    private static byte[] masterSalt;
     private static CryptoAlgorithm algorithm;
+    // engine of the current passphrase, created on first use
+    private static volatile CryptoEngine engine;
 
     private CryptographyUtils() {
     }
@@ -52,12 +59,91 @@ public class CryptographyUtils {
      *             if passphrase is null or blank
      */
     public static void setEncryptKey(String passphrase, CryptoAlgorithm algorithm) {
+        setEncryptKey(passphrase, null, algorithm);
+    }
+
+    /**
+     * Set the passphrase used to derive encryption keys, and the master salt its PBKDF2 master key is derived with.
+     *
+     * <p>
+     * Without a master salt each process draws its own, so the values written by each deploy need their own master key to be decrypted. A master salt created once with
+     * {@link #newMasterSalt()} and stored alongside the passphrase keeps a single master key for all of them.
+     *
+     * @param passphrase
+     *            the passphrase used to derive AES keys; must be non-empty
+     * @param masterSalt
+     *            a salt returned by {@link #newMasterSalt()}, or null to use a salt of this process
+     * @throws IllegalArgumentException
+     *             if passphrase is null or blank, or the master salt is not a valid salt
+     */
+    public static void setEncryptKey(String passphrase, String masterSalt, CryptoAlgorithm algorithm) {
         if (passphrase == null || passphrase.isBlank()) {
             throw new IllegalArgumentException("Encrypt key must be non-empty.");
         }
+        byte[] salt = (masterSalt != null) ? CryptoAesGcm.decodeMasterSalt(masterSalt) : null;
         // Defensive copy to char[]
         CryptographyUtils.encryptKey = passphrase.toCharArray();
+        CryptographyUtils.masterSalt = salt;
         CryptographyUtils.algorithm = algorithm;
+        CryptographyUtils.engine = null;
+    }
+
+    /**
+     * Returns a new random master salt, to be created once and stored alongside the passphrase.
+     *
+     * @see #setEncryptKey(String, String, CryptoAlgorithm)
+     */
+    public static String newMasterSalt() {
+        return CryptoAesGcm.newMasterSalt();
+    }
+
+    /**
+     * Creates an engine that encrypts and decrypts with a passphrase other than the configured one, e.g. one per tenant. Creating it derives the master key, which takes tens of
+     * milliseconds, so engines should be kept and reused.
+     *
+     * @throws IllegalArgumentException
+     *             if passphrase is null or blank
+     */
+    public static CryptoEngine newEngine(String passphrase) {
+        if (passphrase == null || passphrase.isBlank()) {
+            throw new IllegalArgumentException("Encrypt key must be non-empty.");
+        }
+        return new CryptoEngine(passphrase.toCharArray());
+    }
+
+    /**
+     * Creates an engine like {@link #newEngine(String)} that encrypts with the given master salt.
+     *
+     * @param masterSalt
+     *            a salt returned by {@link #newMasterSalt()}
+     * @throws IllegalArgumentException
+     *             if passphrase is null or blank, or the master salt is not a valid salt
+     */
+    public static CryptoEngine newEngine(String passphrase, String masterSalt) {
+        if (passphrase == null || passphrase.isBlank()) {
+            throw new IllegalArgumentException("Encrypt key must be non-empty.");
+        }
+        return new CryptoEngine(passphrase.toCharArray(), CryptoAesGcm.decodeMasterSalt(masterSalt));
+    }
+
+    /**
+     * Returns the engine of the configured passphrase.
+     *
+     * @throws IllegalStateException
+     *             if the algorithm is not supported
+     */
+    public static CryptoEngine getEngine() {
+        if (algorithm != CryptoAlgorithm.AES_GCM) {
+            throw new IllegalStateException("Unsupported encryption algorithm: " + algorithm);
+        }
+        char[] key = encryptKey;
+        byte[] salt = masterSalt;
+        CryptoEngine current = engine;
+        if (current == null || !current.hasConfiguration(key, salt)) {
+            current = new CryptoEngine(key, salt);
+            engine = current;
+        }
+        return current;
     }
 
     // ========= Encryption / Decryption (AES-GCM) =========
@@ -66,7 +152,7 @@ public class CryptographyUtils {
      * Encrypts plaintext and returns an encoded string with metadata.
      *
      * <p>
-     * Format: v1:pbkdf2:iter:saltB64:ivB64:cipherB64
+     * Format: v2:hkdf:iter:masterSaltB64:nonceB64:ivB64:cipherB64. The PBKDF2 master key is derived once and cached, and each message gets its own key derived with HKDF.
      *
      * @param plaintext
      *            the UTF-8 plaintext to encrypt; must not be null
@@ -77,15 +163,11 @@ public class CryptographyUtils {
      *             for internal encryption failures
      */
     public static String encrypt(String plaintext) {
-        if (algorithm == CryptoAlgorithm.AES_GCM) {
-            return CryptoAesGcm.encrypt(encryptKey, plaintext);
-        } else {
-            throw new IllegalStateException("Unsupported encryption algorithm: " + algorithm);
-        }
+        return getEngine().encrypt(plaintext);
     }
 
     /**
-     * Decrypts a string previously produced by {@link #encrypt(String)}.
+     * Decrypts a string previously produced by {@link #encrypt(String)}, in the current v2 format or in the v1 format of previous versions.
      *
      * @param encoded
      *            the encoded ciphertext string produced by {@link #encrypt(String)}; must not be null
@@ -98,11 +180,55 @@ public class CryptographyUtils {
      *             if decryption fails (possible tampering or wrong key)
      */
     public static String decrypt(String encoded) {
-        if (algorithm == CryptoAlgorithm.AES_GCM) {
-            return CryptoAesGcm.decrypt(encryptKey, encoded);
-        } else {
-            throw new IllegalStateException("Unsupported encryption algorithm: " + algorithm);
-        }
+        return getEngine().decrypt(encoded);
+    }
+
+    /**
+     * Encrypts a list of values in parallel on the common fork-join pool, keeping their order. The master key is derived once for the whole batch.
+     *
+     * @see CryptoEngine#encryptAll(List, Executor)
+     */
+    public static List<String> encryptAll(List<String> plaintexts) {
+        return getEngine().encryptAll(plaintexts);
+    }
+
+    public static List<String> encryptAll(List<String> plaintexts, Executor executor) {
+        return getEngine().encryptAll(plaintexts, executor);
+    }
+
+    /**
+     * Decrypts a list of values in parallel on the common fork-join pool, keeping their order.
+     *
+     * @see CryptoEngine#decryptAll(List, Executor)
+     */
+    public static List<String> decryptAll(List<String> encoded) {
+        return getEngine().decryptAll(encoded);
+    }
+
+    public static List<String> decryptAll(List<String> encoded, Executor executor) {
+        return getEngine().decryptAll(encoded, executor);
+    }
+
+    /**
+     * @see CryptoEngine#tryEncryptAll(List, Executor)
+     */
+    public static List<CryptoResult> tryEncryptAll(List<String> plaintexts, Executor executor) {
+        return getEngine().tryEncryptAll(plaintexts, executor);
+    }
+
+    /**
+     * @see CryptoEngine#tryDecryptAll(List, Executor)
+     */
+    public static List<CryptoResult> tryDecryptAll(List<String> encoded, Executor executor) {
+        return getEngine().tryDecryptAll(encoded, executor);
+    }
+
+    public static Stream<String> encryptStream(Stream<String> plaintexts) {
+        return getEngine().encryptStream(plaintexts);
+    }
+
+    public static Stream<String> decryptStream(Stream<String> encoded) {
+        return getEngine().decryptStream(encoded);
     }
 
     public enum CryptoAlgorithm {
@@ -25,6 +25,15 @@ package cl.kanopus.common;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.ObjectName;
 import org.junit.jupiter.api.Test;
 
 class ThreadContextTest {
@@ -50,4 +59,134 @@ class ThreadContextTest {
         String uid2 = ThreadContext.getThreadUniqueId();
         assertNotNull(uid2);
     }
+
+    @Test
+    void typedKeys_shareTheStringKeys() {
+        ThreadContext.Key<Integer> key = ThreadContext.Key.of("retries", Integer.class);
+        ThreadContext.set(key, 3);
+        assertEquals(3, ThreadContext.get(key));
+        assertEquals(3, ThreadContext.getObject("retries"));
+
+        ThreadContext.addObject("retries", "three");
+        assertThrows(ClassCastException.class, () -> ThreadContext.get(key));
+        ThreadContext.destroyContext();
+    }
+
+    @Test
+    void eachThreadHasItsOwnContext() throws InterruptedException {
+        ThreadContext.setUserName("main");
+        AtomicReference<String> seen = new AtomicReference<>("unset");
+        Thread other = new Thread(() -> {
+            seen.set(ThreadContext.getUserName());
+            ThreadContext.setUserName("other");
+        });
+        other.start();
+        other.join();
+
+        assertNull(seen.get());
+        assertEquals("main", ThreadContext.getUserName());
+        ThreadContext.destroyContext();
+    }
+
+    @Test
+    void scope_removesTheContext() {
+        ThreadContext.Scope scope = ThreadContext.openContext();
+        try {
+            ThreadContext.setToken("t");
+            assertEquals("t", ThreadContext.getToken());
+        } finally {
+            scope.close();
+        }
+        assertNull(ThreadContext.getToken());
+        assertNull(ThreadContext.getObject("threadUniqueId"));
+    }
+
+    @Test
+    void capturedContext_followsTasksToOtherThreads() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            ThreadContext.initContext();
+            ThreadContext.setAppKey("app");
+            ThreadContext.setUserId(7L);
+            String uid = ThreadContext.getThreadUniqueId();
+
+            Executor executor = ThreadContext.wrap(pool);
+            AtomicReference<String> appKey = new AtomicReference<>();
+            AtomicReference<Long> userId = new AtomicReference<>();
+            executor.execute(() -> {
+                appKey.set(ThreadContext.getAppKey());
+                userId.set(ThreadContext.getUserId());
+                ThreadContext.setUserId(8L);
+            });
+            assertEquals(uid, ThreadContext.supplyAsync(ThreadContext::getThreadUniqueId, pool).get());
+            assertEquals("app", appKey.get());
+            assertEquals(7L, userId.get());
+            assertEquals(7L, ThreadContext.getUserId());
+
+            // nothing is left on the pooled thread
+            assertNull(pool.submit(ThreadContext::getUserId).get());
+        } finally {
+            pool.shutdown();
+            ThreadContext.destroyContext();
+        }
+    }
+
+    @Test
+    void runWith_restoresThePreviousContext() throws Exception {
+        ThreadContext.setUserName("first");
+        ThreadContext.Snapshot snapshot = ThreadContext.capture();
+        ThreadContext.setUserName("second");
+
+        String seen = ThreadContext.callWith(snapshot, ThreadContext::getUserName);
+
+        assertEquals("first", seen);
+        assertEquals("first", snapshot.getObject("threadUserName"));
+        assertEquals("second", ThreadContext.getUserName());
+        ThreadContext.destroyContext();
+    }
+
+    @Test
+    void mark_recordsPhases() throws Exception {
+        long before = ThreadContext.getLatencyHistogram("sleep").getCount();
+        long totalBefore = ThreadContext.getLatencyHistogram(ThreadContext.PHASE_TOTAL).getCount();
+        ThreadContext.Scope scope = ThreadContext.openContext();
+        try {
+            Thread.sleep(5);
+            assertTrue(ThreadContext.mark("sleep") >= TimeUnit.MILLISECONDS.toNanos(5));
+            ThreadContext.mark("db");
+            ThreadContext.mark("sleep");
+
+            assertEquals(Arrays.asList("sleep", "db"), new ArrayList<>(ThreadContext.getPhaseTimesMillis().keySet()));
+            assertTrue(ThreadContext.getPhaseTimesMillis().get("sleep") >= 5);
+            assertTrue(ThreadContext.getTotalTimeMillis() >= 5);
+        } finally {
+            scope.close();
+        }
+        assertEquals(before + 2, ThreadContext.getLatencyHistogram("sleep").getCount());
+        assertEquals(totalBefore + 1, ThreadContext.getLatencyHistogram(ThreadContext.PHASE_TOTAL).getCount());
+        assertEquals(0, ThreadContext.mark("sleep"));
+
+        ThreadContext.registerMBean();
+        ThreadContext.registerMBean();
+        ObjectName name = new ObjectName("cl.kanopus.common:type=LatencyStats");
+        assertTrue(Arrays.asList((String[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Phases")).contains("sleep"));
+        Object[] unknown = {"unknown-phase"};
+        String[] signature = {String.class.getName()};
+        assertEquals(0L, ManagementFactory.getPlatformMBeanServer().invoke(name, "getCount", unknown, signature));
+        assertEquals(0.0, ManagementFactory.getPlatformMBeanServer().invoke(name, "getMaxMillis", unknown, signature));
+        assertFalse(ThreadContext.getLatencyHistograms().containsKey("unknown-phase"));
+    }
+
+    @Test
+    void idGenerator_isPluggable() {
+        try {
+            ThreadContext.setIdGenerator(() -> "fixed_id");
+            ThreadContext.initContext();
+            assertEquals("fixed_id", ThreadContext.getThreadUniqueId());
+        } finally {
+            ThreadContext.setIdGenerator(new TimeOrderedIdGenerator());
+            ThreadContext.destroyContext();
+        }
+        assertThrows(NullPointerException.class, () -> ThreadContext.setIdGenerator(null));
+    }
 }
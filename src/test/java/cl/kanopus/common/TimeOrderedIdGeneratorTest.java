@@ -0,0 +1,63 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void nextId_isCrockfordBase32WithTimePrefix() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        String id = generator.nextId();
+        assertEquals(TimeOrderedIdGenerator.LENGTH, id.length());
+        assertTrue(id.matches("[0-9A-HJKMNP-TV-Z]{10}_[0-9A-HJKMNP-TV-Z]{16}"), id);
+        assertEquals(System.currentTimeMillis() / 1000, decodeTime(id) / 1000, 1);
+    }
+
+    @Test
+    void nextId_isUniqueAndSortsByTime() throws InterruptedException {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(ids.add(generator.nextId()));
+        }
+        String first = generator.nextId();
+        Thread.sleep(2);
+        assertTrue(first.compareTo(generator.nextId()) < 0);
+    }
+
+    private static long decodeTime(String id) {
+        String alphabet = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+        long time = 0;
+        for (int i = 0; i < 10; i++) {
+            time = (time << 5) | alphabet.indexOf(id.charAt(i));
+        }
+        return time;
+    }
+}
@@ -40,4 +40,14 @@ class ChangeAuditTest {
         assertEquals("o", a.getOld());
         assertEquals("n", a.getValue());
     }
+
+    @Test
+    void changeAuditWithProperty() {
+        ChangeAudit a = new ChangeAudit("other.data", ChangeAction.UPDATE, "o", "n");
+
+        assertEquals("other.data", a.getProperty());
+        assertEquals(ChangeAction.UPDATE, a.getAction());
+        assertEquals("o", a.getOld());
+        assertEquals("n", a.getValue());
+    }
 }
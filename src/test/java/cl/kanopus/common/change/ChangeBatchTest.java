@@ -0,0 +1,58 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.change;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+
+class ChangeBatchTest {
+
+    @Test
+    void countsAndIteration() {
+        List<Comparator<String>> results = new ArrayList<>(Arrays.asList(new Comparator<>(ChangeAction.NONE, "a"), new Comparator<>(ChangeAction.UPDATE, "b"),
+                new Comparator<>(ChangeAction.CREATE, "c"), new Comparator<>(ChangeAction.UPDATE, "d")));
+        ChangeBatch<String> batch = new ChangeBatch<>(results);
+
+        assertEquals(4, batch.size());
+        assertEquals(1, batch.getCount(ChangeAction.NONE));
+        assertEquals(2, batch.getCount(ChangeAction.UPDATE));
+        assertEquals(1, batch.getCount(ChangeAction.CREATE));
+        assertEquals(0, batch.getCount(ChangeAction.DELETE));
+        assertTrue(batch.hasChanges());
+        assertEquals("a,b,c,d", StreamSupport.stream(batch.spliterator(), false).map(Comparator::getValue).collect(Collectors.joining(",")));
+        assertThrows(UnsupportedOperationException.class, () -> batch.getResults().clear());
+
+        ChangeBatch<String> none = new ChangeBatch<>(List.of(new Comparator<>(ChangeAction.NONE, "a")));
+        assertFalse(none.hasChanges());
+    }
+}
@@ -0,0 +1,209 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentTreeHashTest {
+
+    private static ConcurrentTreeHash newTree() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", "A", TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("a1", "A1", "a", "t"));
+        tree.add(new NodeHash("a1x", "A1X", "a1", "t"));
+        tree.add(new NodeHash("a2", "A2", "a", "t"));
+        tree.add(new NodeHash("b", "B", TreeHash.KEY_ROOT, "t"));
+        return new ConcurrentTreeHash(tree);
+    }
+
+    @Test
+    void sessions_haveTheirOwnState() {
+        ConcurrentTreeHash tree = newTree();
+        ConcurrentTreeHash.Session s1 = tree.newSession();
+        ConcurrentTreeHash.Session s2 = tree.newSession();
+
+        s1.setExpanded("a", true);
+        Assertions.assertEquals(Arrays.asList("a", "a1", "a2", "b"), keys(s1.getNodeVisibleList()));
+        Assertions.assertEquals(Arrays.asList("a", "b"), keys(s2.getNodeVisibleList()));
+
+        s1.setExpanded("a1", true);
+        List<NodeHash> visible = s1.getNodeVisibleList();
+        Assertions.assertEquals(Arrays.asList("a", "a1", "a1x", "a2", "b"), keys(visible));
+        Assertions.assertEquals(2, visible.get(2).getDepth());
+        Assertions.assertTrue(visible.get(1).isHasChild());
+        Assertions.assertEquals("A1X", visible.get(2).getData());
+
+        s2.propagateCheckDown("a");
+        Assertions.assertTrue(s2.isSelected("a1x"));
+        Assertions.assertFalse(s2.isSelected("b"));
+        Assertions.assertFalse(s1.isSelected("a1x"));
+        s2.propagateUncheckDown(TreeHash.KEY_ROOT);
+        Assertions.assertFalse(s2.isSelected("a"));
+        s1.propagateCheckUp("a1x");
+        Assertions.assertTrue(s1.isSelected("a"));
+        Assertions.assertFalse(s1.isSelected("a2"));
+    }
+
+    @Test
+    void update_keepsSessionState() {
+        ConcurrentTreeHash tree = newTree();
+        ConcurrentTreeHash.Session session = tree.newSession();
+        session.setExpanded("a", true);
+        session.setSelected("a2", true);
+        long version = tree.getVersion();
+
+        tree.update(t -> {
+            t.remove("a1");
+            t.add(new NodeHash("a3", "A3", "a", "t"));
+        });
+        Assertions.assertEquals(version + 1, tree.getVersion());
+        Assertions.assertFalse(tree.contains("a1x"));
+        Assertions.assertEquals(Arrays.asList("a2", "a3"), tree.getKeyChildren("a"));
+        Assertions.assertEquals(Arrays.asList("a", "a2", "a3", "b"), keys(session.getNodeVisibleList()));
+        Assertions.assertTrue(session.isSelected("a2"));
+        Assertions.assertFalse(session.isSelected("a3"));
+        Assertions.assertEquals("A3", tree.getData("a3"));
+        Assertions.assertEquals(4, tree.size());
+    }
+
+    @Test
+    void addAndRemove_copyOnlyTheChangedNodes() {
+        ConcurrentTreeHash tree = newTree();
+        ConcurrentTreeHash.Session session = tree.newSession();
+        NodeHash node = new NodeHash("a3", "A3", "a", "t");
+        tree.add(node);
+        node.setData("changed");
+        Assertions.assertNull(node.tree);
+        Assertions.assertEquals("A3", tree.getData("a3"));
+        Assertions.assertEquals(Arrays.asList("a1", "a2", "a3"), tree.getKeyChildren("a"));
+
+        session.setExpanded("a", true);
+        session.setExpanded("a1", true);
+        session.setSelected("a1x", true);
+        tree.remove("a1");
+        Assertions.assertFalse(tree.contains("a1x"));
+        Assertions.assertEquals(4, tree.size());
+        Assertions.assertEquals(Arrays.asList("a", "a2", "a3", "b"), keys(session.getNodeVisibleList()));
+
+        // the new nodes take the ids of the removed ones, without their state
+        tree.add(new NodeHash("c", null, "b", "t"));
+        tree.add(new NodeHash("d", null, "b", "t"));
+        Assertions.assertFalse(session.isExpanded("c") || session.isExpanded("d"));
+        Assertions.assertFalse(session.isSelected("c") || session.isSelected("d"));
+
+        tree.add(new NodeHash("a", "A'", TreeHash.KEY_ROOT, "t"));
+        Assertions.assertEquals("A'", tree.getData("a"));
+        Assertions.assertFalse(tree.contains("a2"));
+        tree.add(new NodeHash("orphan", null, "missing", "t"));
+        Assertions.assertFalse(tree.contains("orphan"));
+        Assertions.assertEquals(Arrays.asList("b", "a"), tree.getKeyChildren(TreeHash.KEY_ROOT));
+    }
+
+    @Test
+    void sessionState_staysBoundedUnderChurn() {
+        ConcurrentTreeHash tree = newTree();
+        ConcurrentTreeHash.Session session = tree.newSession();
+        for (int i = 0; i < 10000; i++) {
+            tree.add(new NodeHash("n" + i, null, "b", "t"));
+            session.setExpanded("n" + i, true);
+            tree.remove("n" + i);
+        }
+        session.setExpanded("b", true);
+        Assertions.assertEquals(Arrays.asList("a", "b"), keys(session.getNodeVisibleList()));
+        Assertions.assertTrue(session.isExpanded("b"));
+        tree.add(new NodeHash("last", null, "b", "t"));
+        Assertions.assertFalse(session.isExpanded("last"));
+    }
+
+    @Test
+    void idleSession_startsOverOnceItFallsOutOfTheReleaseLog() {
+        ConcurrentTreeHash tree = newTree();
+        ConcurrentTreeHash.Session recent = tree.newSession();
+        ConcurrentTreeHash.Session idle = tree.newSession();
+        recent.setExpanded("a", true);
+        idle.setExpanded("a", true);
+
+        for (int i = 0; i < ConcurrentTreeHash.MAX_LOGGED_RELEASES; i++) {
+            tree.add(new NodeHash("n" + i, null, "b", "t"));
+            tree.remove("n" + i);
+            if (i % 100 == 0) {
+                Assertions.assertTrue(recent.isExpanded("a"));
+            }
+        }
+        Assertions.assertTrue(recent.isExpanded("a"));
+        Assertions.assertFalse(idle.isExpanded("a"));
+        idle.setExpanded("a", true);
+        Assertions.assertEquals(Arrays.asList("a", "a1", "a2", "b"), keys(idle.getNodeVisibleList()));
+    }
+
+    @Test
+    void readersSeeCompleteVersions() throws Exception {
+        ConcurrentTreeHash tree = new ConcurrentTreeHash();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    ConcurrentTreeHash.Session session = tree.newSession();
+                    int size = 0;
+                    while (size < 200) {
+                        // each version adds a parent and its child together
+                        size = tree.size();
+                        Assertions.assertEquals(0, size % 2);
+                        session.setExpanded("p" + (size / 2 - 1), true);
+                        Assertions.assertTrue(session.getNodeVisibleList().size() >= size / 2);
+                    }
+                }));
+            }
+            for (int i = 0; i < 100; i++) {
+                int n = i;
+                tree.update(t -> {
+                    t.add(new NodeHash("p" + n, null, TreeHash.KEY_ROOT, "t"));
+                    t.add(new NodeHash("c" + n, null, "p" + n, "t"));
+                });
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(200, tree.size());
+    }
+
+    private static List<String> keys(List<NodeHash> nodes) {
+        List<String> keys = new ArrayList<>();
+        for (NodeHash node : nodes) {
+            keys.add(node.getKey());
+        }
+        return keys;
+    }
+}
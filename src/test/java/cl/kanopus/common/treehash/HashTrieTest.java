@@ -0,0 +1,77 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HashTrieTest {
+
+    @Test
+    void matchesHashMap_andKeepsPreviousVersions() {
+        Random random = new Random(7);
+        Map<String, Integer> expected = new HashMap<>();
+        HashTrie<Integer> trie = HashTrie.empty();
+        for (int i = 0; i < 20000; i++) {
+            String key = "k" + random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                trie = trie.remove(key);
+            } else {
+                expected.put(key, i);
+                trie = trie.put(key, i);
+            }
+        }
+        Assertions.assertEquals(expected.size(), trie.size());
+        for (int i = 0; i < 5000; i++) {
+            Assertions.assertEquals(expected.get("k" + i), trie.get("k" + i));
+        }
+
+        HashTrie<Integer> before = trie;
+        HashTrie<Integer> after = trie.put("new", 1).remove("k1").remove("k2");
+        Assertions.assertNull(before.get("new"));
+        Assertions.assertEquals(expected.get("k1"), before.get("k1"));
+        Assertions.assertEquals(1, after.get("new"));
+        Assertions.assertNull(after.get("k1"));
+        Assertions.assertSame(after, after.remove("missing"));
+    }
+
+    @Test
+    void collidingKeys() {
+        // "Aa" and "BB" have the same hash code
+        HashTrie<String> trie = HashTrie.<String> empty().put("Aa", "1").put("BB", "2").put("AaAa", "3").put("BBBB", "4").put("AaBB", "5");
+        Assertions.assertEquals(5, trie.size());
+        Assertions.assertEquals("2", trie.get("BB"));
+        Assertions.assertEquals("5", trie.get("AaBB"));
+        trie = trie.put("BB", "6").remove("Aa").remove("BBBB");
+        Assertions.assertEquals(3, trie.size());
+        Assertions.assertNull(trie.get("Aa"));
+        Assertions.assertEquals("6", trie.get("BB"));
+        Assertions.assertEquals("3", trie.get("AaAa"));
+        Assertions.assertEquals(0, trie.remove("BB").remove("AaAa").remove("AaBB").size());
+    }
+}
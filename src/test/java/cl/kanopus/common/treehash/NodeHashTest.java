@@ -23,6 +23,7 @@
  */
 package cl.kanopus.common.treehash;
 
+import java.util.Arrays;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -61,7 +62,23 @@ class NodeHashTest {
     void hasChild_reflectsChildrenList() {
         NodeHash n = new NodeHash("root", null, "t");
         Assertions.assertFalse(n.isHasChild());
-        n.getKeyChildren().add("c1");
+        n.addKeyChild("c1");
         Assertions.assertTrue(n.isHasChild());
     }
+
+    @Test
+    void keyChildren_isOrderedReadOnlyView() {
+        NodeHash n = new NodeHash("root", null, "t");
+        n.addKeyChild("c2");
+        n.addKeyChild("c1");
+        n.addKeyChild("c3");
+        Assertions.assertFalse(n.addKeyChild("c1"));
+        Assertions.assertEquals(Arrays.asList("c2", "c1", "c3"), n.getKeyChildren());
+
+        n.removeKeyChild("c1");
+        Assertions.assertEquals("c3", n.getKeyChildren().get(1));
+        Assertions.assertTrue(n.getKeyChildren().contains("c2"));
+        Assertions.assertFalse(n.getKeyChildren().contains("c1"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> n.getKeyChildren().add("c4"));
+    }
 }
@@ -0,0 +1,192 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.treehash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TreeHashCodecTest {
+
+    @Test
+    void encodeDecode_keepsStructureFlagsAndData() {
+        TreeHash tree = sampleTree();
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+
+        TreeHash copy = codec.decode(codec.encode(tree));
+
+        assertSameTree(tree, copy);
+        Assertions.assertEquals(-7, copy.getNodeHash("b").getData());
+        Assertions.assertEquals("é", copy.getNodeHash("c").getData());
+        Assertions.assertEquals(12L, copy.getNodeHash("orphan").getData());
+    }
+
+    @Test
+    void javaSerialization_usesTheCompactEncoding() throws Exception {
+        TreeHash tree = sampleTree();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(tree);
+        }
+        TreeHash copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TreeHash) in.readObject();
+        }
+
+        assertSameTree(tree, copy);
+        // the copy is a working tree
+        copy.add(new NodeHash("d", null, "a", "t"));
+        copy.propagateCheckDown("a");
+        Assertions.assertTrue(copy.getNodeHash("d").isSelected());
+        Assertions.assertFalse(copy.getNodeHash("b").isSelected());
+    }
+
+    @Test
+    void encode_unsupportedData_fails() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", new Object(), TreeHash.KEY_ROOT, "t"));
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        Assertions.assertThrows(UncheckedIOException.class, () -> codec.encode(tree));
+    }
+
+    @Test
+    void decode_unknownVersion_fails() {
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        UncheckedIOException e = Assertions.assertThrows(UncheckedIOException.class, () -> codec.decode(new byte[] {9}));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    void decode_corruptLengthsAndCounts_fail() {
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        byte[] minusOne = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f};
+        byte[] maxInt = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+        for (byte[] bytes : Arrays.asList(concat(new byte[] {2}, minusOne), concat(new byte[] {2}, maxInt), concat(new byte[] {2, 1, 1}, minusOne), concat(new byte[] {2, 1, 1}, maxInt))) {
+            UncheckedIOException e = Assertions.assertThrows(UncheckedIOException.class, () -> codec.decode(bytes));
+            Assertions.assertTrue(e.getCause() instanceof StreamCorruptedException, e.getCause().toString());
+        }
+    }
+
+    @Test
+    void encode_writesEachEdgeOnce_andKeepsAnExplicitParent() {
+        TreeHash tree = sampleTree();
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        tree.getNodeHash("c").setKeyParent("b");
+
+        TreeHash copy = codec.decode(codec.encode(tree));
+        Assertions.assertEquals("b", copy.getNodeHash("c").getKeyParent());
+        Assertions.assertEquals("a", copy.getNodeHash("b").getKeyParent());
+        Assertions.assertEquals(Arrays.asList("c", "b"), copy.getNodeHash("a").getKeyChildren());
+
+        TreeHash wide = new TreeHash();
+        for (int i = 0; i < 1000; i++) {
+            wide.add(new NodeHash("k" + i, null, TreeHash.KEY_ROOT, "t"));
+        }
+        // per node: key index or text, type index, flags, data tag and child count
+        Assertions.assertTrue(codec.encode(wide).length < 1000 * 10, "size " + codec.encode(wide).length);
+    }
+
+    @Test
+    void encodeDecode_keepsAChildSharedByTwoParents() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("b", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("x", null, "a", "t"));
+        tree.add(new NodeHash("y", null, "b", "t"));
+        NodeHash b = tree.getNodeHash("b");
+        b.removeKeyChild("y");
+        b.addKeyChild("x");
+        b.addKeyChild("missing");
+        b.addKeyChild("y");
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+
+        TreeHash copy = codec.decode(codec.encode(tree));
+
+        Assertions.assertEquals(Arrays.asList("x"), copy.getNodeHash("a").getKeyChildren());
+        Assertions.assertEquals(Arrays.asList("x", "y"), copy.getNodeHash("b").getKeyChildren());
+        Assertions.assertEquals("a", copy.getNodeHash("x").getKeyParent());
+        Assertions.assertEquals(describe(tree.getNodeList()), describe(copy.getNodeList()));
+    }
+
+    @Test
+    void decode_duplicateKey_fails() {
+        TreeHashCodec codec = new TreeHashCodec(TreeHashCodec.SIMPLE_DATA);
+        // a root "k" with a child "k", and a root "k" with an unconnected node "k"
+        byte[] connected = {3, 2, 1, 1, 'k', 0, 0, 0, 1, 2, 0, 0, 0, 0, 0};
+        byte[] unconnected = {3, 1, 1, 1, 'k', 0, 0, 0, 0, 1, 2, 0, 0, 0, 0, 0};
+        for (byte[] bytes : Arrays.asList(connected, unconnected)) {
+            UncheckedIOException e = Assertions.assertThrows(UncheckedIOException.class, () -> codec.decode(bytes));
+            Assertions.assertTrue(e.getCause() instanceof StreamCorruptedException, e.getCause().toString());
+            Assertions.assertEquals("Duplicate node key: k", e.getCause().getMessage());
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static TreeHash sampleTree() {
+        TreeHash tree = new TreeHash();
+        NodeHash a = new NodeHash("a", "first", TreeHash.KEY_ROOT, "folder");
+        a.setExpanded(true);
+        a.setOriginalSelected(true);
+        NodeHash b = new NodeHash("b", -7, "a", "file");
+        b.setSelectable(false);
+        NodeHash c = new NodeHash("c", "é", "a", "file");
+        c.setHighLight(true);
+        tree.add(a);
+        tree.add(c);
+        tree.add(b);
+        tree.add(new NodeHash("orphan", 12L, "missing", "file"));
+        return tree;
+    }
+
+    private static void assertSameTree(TreeHash expected, TreeHash actual) {
+        Assertions.assertEquals(describe(expected.getNodeList()), describe(actual.getNodeList()));
+        Assertions.assertEquals(describe(expected.getNodeVisibleList()), describe(actual.getNodeVisibleList()));
+        Assertions.assertEquals(Arrays.asList("c", "b"), actual.getNodeHash("a").getKeyChildren());
+        Assertions.assertEquals(describe(Arrays.asList(expected.getNodeHash("orphan"))), describe(Arrays.asList(actual.getNodeHash("orphan"))));
+    }
+
+    private static List<String> describe(List<NodeHash> nodes) {
+        List<String> result = new ArrayList<>();
+        for (NodeHash node : nodes) {
+            result.add(node.getKey() + "<" + node.getKeyParent() + " " + node.getType() + "@" + node.getDepth() + " " + node.getData() + " " + node.isSelected() + node.isOriginalSelected()
+                    + node.isSelectable() + node.isExpanded() + node.isHighLight() + node.isVisibleInSearch());
+        }
+        return result;
+    }
+}
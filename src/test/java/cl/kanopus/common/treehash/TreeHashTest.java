@@ -23,7 +23,12 @@
  */
 package cl.kanopus.common.treehash;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -137,4 +142,319 @@ class TreeHashTest {
         Assertions.assertTrue(tree.getNodeHash("c4").isSelected());
         Assertions.assertTrue(tree.getNodeHash("p4").isSelected());
     }
+
+    @Test
+    void incrementalLists_matchRebuild() {
+        TreeHash tree = new TreeHash();
+        for (int i = 0; i < 5; i++) {
+            tree.add(new NodeHash("p" + i, null, TreeHash.KEY_ROOT, "t"));
+            for (int j = 0; j < 3; j++) {
+                tree.add(new NodeHash("p" + i + "_" + j, null, "p" + i, "t"));
+            }
+        }
+        tree.getNodeHash("p1").setExpanded(true);
+        assertSameAsRebuild(tree);
+
+        // changes applied to the cached lists
+        tree.getNodeHash("p1_1").setExpanded(true);
+        tree.add(new NodeHash("p1_1_0", null, "p1_1", "t"));
+        tree.add(new NodeHash("p1_1_1", null, "p1_1", "t"));
+        tree.add(new NodeHash("p1_3", null, "p1", "t"));
+        tree.add(new NodeHash("p5", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("p2_3", null, "p2", "t"));
+        assertSameAsRebuild(tree);
+        Assertions.assertEquals(2, tree.getNodeHash("p1_1_0").getDepth());
+
+        tree.getNodeHash("p2").setExpanded(true);
+        tree.getNodeHash("p1").setExpanded(false);
+        assertSameAsRebuild(tree);
+
+        tree.getNodeHash("p1").setExpanded(true);
+        tree.remove("p1_1");
+        tree.removeChildren("p2");
+        tree.add(new NodeHash("p0_0", null, "p3", "t"));
+        assertSameAsRebuild(tree);
+        Assertions.assertNull(tree.getNodeHash("p1_1_0"));
+
+        tree.removeChildren(TreeHash.KEY_ROOT);
+        assertSameAsRebuild(tree);
+        Assertions.assertTrue(tree.getNodeList().isEmpty());
+    }
+
+    @Test
+    void wideTree_addAndRemoveSiblings() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("p", null, TreeHash.KEY_ROOT, "t"));
+        for (int i = 0; i < 20000; i++) {
+            tree.add(new NodeHash("c" + i, null, "p", "t"));
+        }
+        tree.add(new NodeHash("c5", null, "p", "t"));
+        Assertions.assertEquals(20000, tree.getNodeHash("p").getKeyChildren().size());
+
+        for (int i = 0; i < 20000; i += 2) {
+            tree.remove("c" + i);
+        }
+        Assertions.assertEquals(10000, tree.getNodeHash("p").getKeyChildren().size());
+        Assertions.assertEquals("c1", tree.getNodeHash("p").getKeyChildren().get(0));
+        Assertions.assertEquals(10001, tree.getNodeList().size());
+    }
+
+    @Test
+    void visibleList_canBeIteratedWhileExpanding() {
+        TreeHash tree = new TreeHash();
+        for (int i = 0; i < 5; i++) {
+            tree.add(new NodeHash("p" + i, null, TreeHash.KEY_ROOT, "t"));
+            tree.add(new NodeHash("p" + i + "_0", null, "p" + i, "t"));
+        }
+        List<NodeHash> visible = tree.getNodeVisibleList();
+        for (NodeHash node : visible) {
+            node.setExpanded(true);
+        }
+        Assertions.assertEquals(5, visible.size());
+        Assertions.assertEquals(10, tree.getNodeVisibleList().size());
+        assertSameAsRebuild(tree);
+
+        for (NodeHash node : tree.getNodeList()) {
+            tree.remove(node.getKey());
+        }
+        Assertions.assertTrue(tree.getNodeList().isEmpty());
+    }
+
+    @Test
+    void manyChildren_addedAfterTheListsAreBuilt() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("b", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("b_0", null, "b", "t"));
+        tree.getNodeHash("a").setExpanded(true);
+        tree.getNodeList();
+        tree.getNodeVisibleList();
+
+        // every child goes in the middle of the lists, before the subtree of b
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 50000; i++) {
+                tree.add(new NodeHash("a_" + i, null, "a", "t"));
+            }
+        });
+        List<NodeHash> all = tree.getNodeList();
+        Assertions.assertEquals(50003, all.size());
+        Assertions.assertEquals("a_49999", all.get(50000).getKey());
+        Assertions.assertEquals("b", all.get(50001).getKey());
+        Assertions.assertEquals(50002, tree.getNodeVisibleList().size());
+
+        for (int i = 0; i < 50000; i += 2) {
+            tree.remove("a_" + i);
+        }
+        tree.getNodeHash("b").setExpanded(true);
+        assertSameAsRebuild(tree);
+    }
+
+    @Test
+    void bulkLoad_anyOrder_reportsOrphans() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"));
+        List<NodeHash> rows = new ArrayList<>();
+        rows.add(new NodeHash("a_1_1", null, "a_1", "t"));
+        rows.add(new NodeHash("b_1", null, "b", "t"));
+        rows.add(new NodeHash("a_1", null, "a", "t"));
+        rows.add(new NodeHash("x_1", null, "x", "t"));
+        rows.add(new NodeHash("x_1_1", null, "x_1", "t"));
+        rows.add(new NodeHash("b", null, TreeHash.KEY_ROOT, "t"));
+        rows.add(new NodeHash("a_2", null, "a", "t"));
+
+        List<NodeHash> orphans = tree.bulkLoad(rows);
+        Assertions.assertEquals(Arrays.asList("x_1", "x_1_1"), toKeys(orphans));
+        Assertions.assertEquals(Arrays.asList("a@0", "a_1@1", "a_1_1@2", "a_2@1", "b@0", "b_1@1"), toKeysWithDepth(tree.getNodeList()));
+        Assertions.assertNotNull(tree.getNodeHash("x_1_1"));
+        assertSameAsRebuild(tree);
+
+        // connecting the orphans later, like add does
+        tree.add(new NodeHash("x", null, TreeHash.KEY_ROOT, "t"));
+        tree.setRefresh(true);
+        Assertions.assertEquals(0, tree.bulkLoad(Stream.of(new NodeHash("x_1", null, "x", "t"))).size());
+        Assertions.assertEquals(8, tree.getNodeList().size());
+    }
+
+    @Test
+    void traverse_ordersAndEarlyStop() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("a1", null, "a", "t"));
+        tree.add(new NodeHash("a1x", null, "a1", "t"));
+        tree.add(new NodeHash("a2", null, "a", "t"));
+        tree.add(new NodeHash("b", null, TreeHash.KEY_ROOT, "t"));
+
+        Assertions.assertEquals(Arrays.asList("a", "a1", "a1x", "a2"), visit(tree, "a", TreeHash.Order.PRE_ORDER));
+        Assertions.assertEquals(Arrays.asList("a1x", "a1", "a2", "a"), visit(tree, "a", TreeHash.Order.POST_ORDER));
+        Assertions.assertEquals(Arrays.asList("root", "a", "b", "a1", "a2", "a1x"), visit(tree, TreeHash.KEY_ROOT, TreeHash.Order.BREADTH_FIRST));
+        Assertions.assertTrue(visit(tree, "missing", TreeHash.Order.PRE_ORDER).isEmpty());
+
+        List<String> visited = new ArrayList<>();
+        Assertions.assertFalse(tree.traverse(TreeHash.KEY_ROOT, TreeHash.Order.PRE_ORDER, n -> visited.add(n.getKey()) && !"a1".equals(n.getKey())));
+        Assertions.assertEquals(Arrays.asList("root", "a", "a1"), visited);
+    }
+
+    @Test
+    void deepTree_doesNotOverflowTheStack() {
+        int depth = 100000;
+        TreeHash tree = new TreeHash();
+        String parent = TreeHash.KEY_ROOT;
+        for (int i = 0; i < depth; i++) {
+            tree.add(new NodeHash("n" + i, null, parent, "t"));
+            parent = "n" + i;
+        }
+
+        Assertions.assertEquals(depth, tree.getNodeList().size());
+        Assertions.assertEquals(depth - 1, tree.getNodeHash(parent).getDepth());
+
+        tree.propagateCheckUp(parent);
+        Assertions.assertTrue(tree.getNodeHash("n0").isSelected());
+        tree.propagateUncheckDown("n0");
+        Assertions.assertFalse(tree.getNodeHash(parent).isSelected());
+        Assertions.assertEquals(depth, visit(tree, "n0", TreeHash.Order.POST_ORDER).size());
+
+        tree.removeNodeBranch(parent);
+        tree.remove("n1");
+        Assertions.assertNull(tree.getNodeHash(parent));
+        Assertions.assertEquals(1, tree.getNodeList().size());
+    }
+
+    @Test
+    void search_marksMatchesAndExpandsAncestors() {
+        TreeHash tree = new TreeHash();
+        tree.add(new NodeHash("fruits", "Frutas", TreeHash.KEY_ROOT, "t"));
+        tree.add(new NodeHash("tropical", "Tropicales", "fruits", "t"));
+        tree.add(new NodeHash("banana", "Plátano", "tropical", "t"));
+        tree.add(new NodeHash("pineapple", "Piña", "tropical", "t"));
+        tree.add(new NodeHash("apple", "Manzana", "fruits", "t"));
+        tree.add(new NodeHash("trees", "Árboles", TreeHash.KEY_ROOT, "t"));
+        tree.indexSearch(n -> (String) n.getData());
+        tree.add(new NodeHash("plum", "Ciruela plana", "fruits", "t"));
+
+        List<NodeHash> found = tree.search("PLA");
+        Assertions.assertEquals(Arrays.asList("banana", "plum"), toKeys(found));
+        Assertions.assertTrue(tree.getNodeHash("banana").isHighLight());
+        Assertions.assertFalse(tree.getNodeHash("tropical").isHighLight());
+        Assertions.assertTrue(tree.getNodeHash("tropical").isExpanded());
+        Assertions.assertEquals(Arrays.asList("fruits", "tropical", "banana", "plum"), toKeys(tree.getNodeVisibleInSearchList()));
+
+        Assertions.assertEquals(Arrays.asList("trees"), toKeys(tree.search("arbol")));
+        Assertions.assertFalse(tree.getNodeHash("banana").isHighLight());
+        Assertions.assertFalse(tree.getNodeHash("banana").isVisibleInSearch());
+        Assertions.assertEquals(Arrays.asList("trees"), toKeys(tree.getNodeVisibleInSearchList()));
+
+        Assertions.assertEquals(Arrays.asList("pineapple"), toKeys(tree.search("PIÑ")));
+        tree.remove("tropical");
+        Assertions.assertTrue(tree.search("piña").isEmpty());
+        Assertions.assertTrue(tree.search("xyz").isEmpty());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("fruits", "apple", "trees", "plum")), new HashSet<>(toKeys(tree.search("a"))));
+
+        // one character texts and queries are verified without n-grams
+        tree.add(new NodeHash("x", "X", "fruits", "t"));
+        Assertions.assertEquals(Arrays.asList("x"), toKeys(tree.search("x")));
+        Assertions.assertTrue(tree.search("xx").isEmpty());
+    }
+
+    @Test
+    void propagate_asRangeOfIds_skipsNotSelectable() {
+        TreeHash tree = new TreeHash();
+        NodeHash locked = new NodeHash("b", null, "a", "t");
+        locked.setSelectable(false);
+        tree.bulkLoad(Arrays.asList(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"), locked, new NodeHash("c", null, "b", "t"), new NodeHash("d", null, TreeHash.KEY_ROOT, "t")));
+
+        tree.propagateCheckDown("a");
+        Assertions.assertTrue(tree.getNodeHash("a").isSelected());
+        Assertions.assertFalse(tree.getNodeHash("b").isSelected());
+        Assertions.assertTrue(tree.getNodeHash("c").isSelected());
+        Assertions.assertFalse(tree.getNodeHash("d").isSelected());
+
+        // a node added after the numbering is still reached
+        tree.add(new NodeHash("e", null, "c", "t"));
+        tree.propagateCheckDown("b");
+        Assertions.assertTrue(tree.getNodeHash("e").isSelected());
+        tree.propagateUncheckDown(TreeHash.KEY_ROOT);
+        Assertions.assertTrue(tree.getSelectionChanges().isEmpty());
+    }
+
+    @Test
+    void propagate_afterAdd_walksTheSubtreeWithoutNumberingTheNodesAgain() {
+        TreeHash tree = new TreeHash();
+        tree.bulkLoad(Arrays.asList(new NodeHash("a", null, TreeHash.KEY_ROOT, "t"), new NodeHash("b", null, "a", "t"), new NodeHash("c", null, TreeHash.KEY_ROOT, "t")));
+        Assertions.assertTrue(tree.flags.isOrdered());
+
+        tree.add(new NodeHash("d", null, "a", "t"));
+        tree.remove("c");
+        Assertions.assertFalse(tree.flags.isOrdered());
+        tree.propagateCheckDown("a");
+        Assertions.assertFalse(tree.flags.isOrdered());
+        Assertions.assertTrue(tree.getNodeHash("d").isSelected());
+        Assertions.assertEquals(Arrays.asList("a", "b", "d"), toKeys(tree.getSelectionChanges()));
+        tree.propagateUncheckDown("d");
+        Assertions.assertFalse(tree.getNodeHash("d").isSelected());
+        Assertions.assertTrue(tree.getNodeHash("b").isSelected());
+
+        // building the list of all nodes numbers them again
+        tree.setRefresh(true);
+        tree.getNodeList();
+        Assertions.assertTrue(tree.flags.isOrdered());
+        NodeHash a = tree.getNodeHash("a");
+        Assertions.assertEquals(a.id + 3, tree.flags.subtreeEnd(a.id));
+        tree.propagateCheckDown("a");
+        Assertions.assertTrue(tree.getNodeHash("d").isSelected());
+    }
+
+    @Test
+    void selectionChanges_andFlagsKeptOnRemove() {
+        TreeHash tree = new TreeHash();
+        NodeHash a = new NodeHash("a", null, TreeHash.KEY_ROOT, "t");
+        NodeHash b = new NodeHash("b", null, TreeHash.KEY_ROOT, "t");
+        b.setOriginalSelected(true);
+        b.setSelected(true);
+        tree.add(a);
+        tree.add(b);
+        tree.add(new NodeHash("c", null, TreeHash.KEY_ROOT, "t"));
+        tree.getNodeList();
+
+        tree.getNodeHash("a").setSelected(true);
+        tree.getNodeHash("b").setSelected(false);
+        Assertions.assertEquals(Arrays.asList("a", "b"), toKeys(tree.getSelectionChanges()));
+
+        tree.remove("a");
+        Assertions.assertTrue(a.isSelected());
+        Assertions.assertEquals(Arrays.asList("b"), toKeys(tree.getSelectionChanges()));
+        NodeHash d = new NodeHash("d", null, TreeHash.KEY_ROOT, "t");
+        tree.add(d);
+        Assertions.assertFalse(d.isSelected());
+        Assertions.assertTrue(d.isSelectable());
+    }
+
+    private static List<String> visit(TreeHash tree, String fromKey, TreeHash.Order order) {
+        List<String> keys = new ArrayList<>();
+        tree.traverse(fromKey, order, n -> keys.add(n.getKey()));
+        return keys;
+    }
+
+    private static List<String> toKeys(List<NodeHash> nodes) {
+        List<String> keys = new ArrayList<>();
+        for (NodeHash node : nodes) {
+            keys.add(node.getKey());
+        }
+        return keys;
+    }
+
+    private static void assertSameAsRebuild(TreeHash tree) {
+        List<String> all = toKeysWithDepth(tree.getNodeList());
+        List<String> visible = toKeysWithDepth(tree.getNodeVisibleList());
+        tree.setRefresh(true);
+        Assertions.assertEquals(toKeysWithDepth(tree.getNodeList()), all);
+        Assertions.assertEquals(toKeysWithDepth(tree.getNodeVisibleList()), visible);
+    }
+
+    private static List<String> toKeysWithDepth(List<NodeHash> nodes) {
+        List<String> keys = new ArrayList<>();
+        for (NodeHash node : nodes) {
+            keys.add(node.getKey() + "@" + node.getDepth());
+        }
+        return keys;
+    }
 }
@@ -24,10 +24,15 @@
 package cl.kanopus.common.util;
 
 import cl.kanopus.common.change.ChangeAction;
+import cl.kanopus.common.change.ChangeAudit;
+import cl.kanopus.common.change.ChangeBatch;
 import cl.kanopus.common.change.Comparator;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -53,6 +58,82 @@ class ChangeUtilsTest {
         Assertions.assertEquals(ChangeAction.CREATE, merges.get(3).getAction());
     }
 
+    @Test
+    void checkChangeOnListWithKey() {
+
+        List<ExampleTO> original = Arrays.asList(new ExampleTO(3, "example3"), // UPDATE
+                new ExampleTO(1, "example1"), // NONE
+                new ExampleTO(2, "example2"), // DELETE
+                new ExampleTO(0, "example0")); // NONE
+
+        List<ExampleTO> target = Arrays.asList(new ExampleTO(5, "example5"), // CREATE
+                new ExampleTO(0, "example0"), // NONE
+                new ExampleTO(1, "example1"), // NONE
+                new ExampleTO(3, "example3-updated"), // UPDATE
+                new ExampleTO(4, "example4")); // CREATE
+
+        List<Comparator<ExampleTO>> merges = ChangeUtils.checkChangeOnList(original, target, ExampleTO::getId);
+        Assertions.assertEquals(6, merges.size());
+        Assertions.assertEquals(ChangeAction.UPDATE, merges.get(0).getAction());
+        Assertions.assertEquals("example3-updated", merges.get(0).getValue().getName());
+        Assertions.assertEquals(ChangeAction.NONE, merges.get(1).getAction());
+        Assertions.assertEquals(ChangeAction.DELETE, merges.get(2).getAction());
+        Assertions.assertEquals(2, merges.get(2).getValue().getId());
+        Assertions.assertEquals(ChangeAction.NONE, merges.get(3).getAction());
+        Assertions.assertEquals(ChangeAction.CREATE, merges.get(4).getAction());
+        Assertions.assertEquals(5, merges.get(4).getValue().getId());
+        Assertions.assertEquals(ChangeAction.CREATE, merges.get(5).getAction());
+        Assertions.assertEquals(4, merges.get(5).getValue().getId());
+
+        List<Comparator<String>> duplicated = ChangeUtils.checkChangeOnList(Arrays.asList("a", "a", null), Arrays.asList("a", null, "b"), v -> v);
+        Assertions.assertEquals(3, duplicated.size());
+        Assertions.assertEquals(ChangeAction.NONE, duplicated.get(0).getAction());
+        Assertions.assertEquals(ChangeAction.DELETE, duplicated.get(1).getAction());
+        Assertions.assertEquals(ChangeAction.CREATE, duplicated.get(2).getAction());
+        Assertions.assertEquals("b", duplicated.get(2).getValue());
+        Assertions.assertEquals(ChangeAction.CREATE, ChangeUtils.checkChangeOnList(null, Arrays.asList("x"), v -> v).get(0).getAction());
+    }
+
+    @Test
+    void checkChangeBatch() {
+        List<ExampleTO> original = new ArrayList<>();
+        List<ExampleTO> target = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            original.add(new ExampleTO(i, "example" + i));
+            if (i % 3 != 0) {
+                target.add(new ExampleTO(i, (i % 3 == 1) ? "example" + i : "updated" + i));
+            }
+        }
+        target.add(new ExampleTO(5000, "example5000"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ChangeBatch<ExampleTO> batch;
+        try {
+            batch = ChangeUtils.checkChangeBatch(original, target, ExampleTO::getId, executor);
+        } finally {
+            executor.shutdown();
+        }
+        List<Comparator<ExampleTO>> expected = ChangeUtils.checkChangeOnList(original, target, ExampleTO::getId);
+        Assertions.assertEquals(expected.size(), batch.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getAction(), batch.getResults().get(i).getAction());
+            Assertions.assertSame(expected.get(i).getValue(), batch.getResults().get(i).getValue());
+        }
+        Assertions.assertEquals(1000, batch.getCount(ChangeAction.DELETE));
+        Assertions.assertEquals(1000, batch.getCount(ChangeAction.UPDATE));
+        Assertions.assertEquals(1000, batch.getCount(ChangeAction.NONE));
+        Assertions.assertEquals(1, batch.getCount(ChangeAction.CREATE));
+        Assertions.assertEquals(1, batch.stream().filter(c -> c.getAction() == ChangeAction.CREATE).count());
+
+        ChangeBatch<ExampleTO> common = ChangeUtils.checkChangeBatch(original, target, ExampleTO::getId);
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getAction(), common.getResults().get(i).getAction());
+        }
+
+        Assertions.assertEquals(0, ChangeUtils.checkChangeBatch(null, null, ExampleTO::getId).size());
+        Assertions.assertThrows(NullPointerException.class, () -> ChangeUtils.checkChangeBatch(original, target, ExampleTO::getId, null));
+    }
+
     @Test
     void checkChangeOnListString() {
 
@@ -151,6 +232,146 @@ class ChangeUtilsTest {
         Assertions.assertEquals(ChangeAction.DELETE, ChangeUtils.checkChange(original, nullable));
     }
 
+    @Test
+    void checkChangePrimitivesAndInheritance() {
+        PrimitiveTO original = new PrimitiveTO(1, "example1");
+        original.amount = Double.NaN;
+        original.active = true;
+        original.code = 'a';
+
+        PrimitiveTO same = new PrimitiveTO(1, "example1");
+        same.amount = Double.NaN;
+        same.active = true;
+        same.code = 'a';
+        Assertions.assertEquals(ChangeAction.NONE, ChangeUtils.checkChange(original, same));
+
+        same.code = 'b';
+        Assertions.assertEquals(ChangeAction.UPDATE, ChangeUtils.checkChange(original, same));
+        same.code = 'a';
+        same.amount = -0.0;
+        Assertions.assertEquals(ChangeAction.UPDATE, ChangeUtils.checkChange(original, same));
+        same.amount = Double.NaN;
+        same.setName("example2");
+        Assertions.assertEquals(ChangeAction.UPDATE, ChangeUtils.checkChange(original, same));
+
+        // the target is not of the class of the source
+        Assertions.assertEquals(ChangeAction.NONE, ChangeUtils.checkChange(original, new ExampleTO.OtherTO(1, "example1")));
+    }
+
+    @Test
+    void diff() {
+        ExampleTO original = new ExampleTO(1, "example1");
+        original.setValues(Arrays.asList("one", "two"));
+        original.setOther(new ExampleTO.OtherTO(1, "role1"));
+
+        ExampleTO updated = new ExampleTO(2, "example1");
+        updated.setValues(Arrays.asList("one", "three", "four"));
+        updated.setOther(new ExampleTO.OtherTO(1, "role1-updated"));
+        updated.setComplex(Arrays.asList(new ExampleTO.OtherTO(5, "c")));
+
+        List<ChangeAudit> changes = ChangeUtils.diff(original, updated);
+        Assertions.assertEquals(5, changes.size());
+        assertAudit(changes.get(0), "id", ChangeAction.UPDATE, "1", "2");
+        assertAudit(changes.get(1), "values[1]", ChangeAction.UPDATE, "two", "three");
+        assertAudit(changes.get(2), "values[2]", ChangeAction.CREATE, null, "four");
+        assertAudit(changes.get(3), "other.data", ChangeAction.UPDATE, "role1", "role1-updated");
+        Assertions.assertEquals("complex", changes.get(4).getProperty());
+        Assertions.assertEquals(ChangeAction.CREATE, changes.get(4).getAction());
+
+        Assertions.assertTrue(ChangeUtils.diff(original, original).isEmpty());
+        assertAudit(ChangeUtils.diff(original, null).get(0), "", ChangeAction.DELETE, original.toString(), null);
+
+        List<ChangeAudit> streamed = new ArrayList<>();
+        ChangeUtils.diff(original, updated, streamed::add);
+        Assertions.assertEquals(changes.size(), streamed.size());
+    }
+
+    @Test
+    void diff_bidirectionalGraph_comparesEachPairOnce() {
+        ParentTO original = ParentTO.withChildren("parent", 4);
+        ParentTO updated = ParentTO.withChildren("renamed", 4);
+        updated.children.get(1).value = 10;
+
+        List<ChangeAudit> changes = ChangeUtils.diff(original, updated);
+        Assertions.assertEquals(2, changes.size());
+        assertAudit(changes.get(0), "name", ChangeAction.UPDATE, "parent", "renamed");
+        assertAudit(changes.get(1), "children[1].value", ChangeAction.UPDATE, "1", "10");
+        Assertions.assertTrue(ChangeUtils.diff(original, ParentTO.withChildren("parent", 4)).isEmpty());
+    }
+
+    @Test
+    void diffAndCheckChange_compareArraysByContent() {
+        ArrayTO original = new ArrayTO("a", new byte[] {1, 2});
+        ArrayTO copy = new ArrayTO("a", new byte[] {1, 2});
+        ArrayTO updated = new ArrayTO("a", new byte[] {1, 3});
+
+        Assertions.assertEquals(ChangeAction.NONE, ChangeUtils.checkChange(original, copy));
+        Assertions.assertTrue(ChangeUtils.diff(original, copy).isEmpty());
+        Assertions.assertEquals(ChangeAction.NONE, ChangeUtils.checkChange(new int[] {1, 2}, new int[] {1, 2}));
+
+        Assertions.assertEquals(ChangeAction.UPDATE, ChangeUtils.checkChange(original, updated));
+        List<ChangeAudit> changes = ChangeUtils.diff(original, updated);
+        Assertions.assertEquals(1, changes.size());
+        assertAudit(changes.get(0), "hash", ChangeAction.UPDATE, "[1, 2]", "[1, 3]");
+    }
+
+    private static void assertAudit(ChangeAudit audit, String property, ChangeAction action, String old, String value) {
+        Assertions.assertEquals(property, audit.getProperty());
+        Assertions.assertEquals(action, audit.getAction());
+        Assertions.assertEquals(old, audit.getOld());
+        Assertions.assertEquals(value, audit.getValue());
+    }
+
+    public static class ParentTO {
+
+        private String name;
+        private List<ChildTO> children = new ArrayList<>();
+
+        static ParentTO withChildren(String name, int count) {
+            ParentTO parent = new ParentTO();
+            parent.name = name;
+            for (int i = 0; i < count; i++) {
+                ChildTO child = new ChildTO();
+                child.parent = parent;
+                child.value = i;
+                parent.children.add(child);
+            }
+            return parent;
+        }
+    }
+
+    public static class ChildTO {
+
+        private ParentTO parent;
+        private int value;
+    }
+
+    @SuppressWarnings("unused")
+    public static class ArrayTO {
+
+        private String name;
+        private byte[] hash;
+
+        public ArrayTO(String name, byte[] hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class PrimitiveTO extends ExampleTO {
+
+        private static int instances;
+        private double amount;
+        private boolean active;
+        private char code;
+
+        public PrimitiveTO(long id, String name) {
+            super(id, name);
+            instances++;
+        }
+    }
+
     @SuppressWarnings("unused")
     public static class ExampleTO {
 
@@ -25,8 +25,19 @@ package cl.kanopus.common.util;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 class KanopusBeanUtilsTest {
@@ -75,6 +86,129 @@ class KanopusBeanUtilsTest {
         }
     }
 
+    @SuppressWarnings("unused")
+    public static class C {
+        private String title;
+        private int value;
+        private B detail;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        public B getDetail() {
+            return detail;
+        }
+
+        public void setDetail(B detail) {
+            this.detail = detail;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class D {
+        private String name;
+        private Date created;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class E {
+        private String name;
+        private LocalDateTime created;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public LocalDateTime getCreated() {
+            return created;
+        }
+
+        public void setCreated(LocalDateTime created) {
+            this.created = created;
+        }
+    }
+
+    public static class Node {
+        private String name;
+        private Node parent;
+        private B detail;
+        private B other;
+        private List<Node> children = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        public void setParent(Node parent) {
+            this.parent = parent;
+        }
+
+        public B getDetail() {
+            return detail;
+        }
+
+        public void setDetail(B detail) {
+            this.detail = detail;
+        }
+
+        public B getOther() {
+            return other;
+        }
+
+        public void setOther(B other) {
+            this.other = other;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<Node> children) {
+            this.children = children;
+        }
+    }
+
     @Test
     void copyPropertiesSimple() {
         A a = new A();
@@ -155,4 +289,212 @@ class KanopusBeanUtilsTest {
         assertNotNull(d.getData().getData());
         assertArrayEquals(s.getData(), java.util.Base64.getDecoder().decode(d.getData().getData()));
     }
+
+    @Test
+    void copyListWithTranslationMap() {
+        A a = new A();
+        a.setName("x");
+        a.setValue(7);
+
+        Map<String, String> translation = new HashMap<>();
+        translation.put("name", "title");
+        List<C> out = KanopusBeanUtils.copyList(Collections.singletonList(a), C.class, translation, null);
+        assertEquals("x", out.get(0).getTitle());
+        assertEquals(7, out.get(0).getValue());
+        assertNull(out.get(0).getDetail());
+
+        // the cached copy plan must not keep using the previous content of the map
+        translation.put("name", "detail.s");
+        out = KanopusBeanUtils.copyList(Collections.singletonList(a), C.class, translation, null);
+        assertNull(out.get(0).getTitle());
+        assertNotNull(out.get(0).getDetail());
+        assertEquals("x", out.get(0).getDetail().getS());
+
+        // more maps than the cache keeps for the pair of classes
+        for (int i = 0; i < 40; i++) {
+            Map<String, String> other = new HashMap<>();
+            other.put("name", (i % 2 == 0) ? "title" : "detail.s");
+            other.put("unknown" + i, "title");
+            C copy = KanopusBeanUtils.copyList(Collections.singletonList(a), C.class, other, null).get(0);
+            assertEquals((i % 2 == 0) ? "x" : null, copy.getTitle());
+        }
+        out = KanopusBeanUtils.copyList(Collections.singletonList(a), C.class, new HashMap<>(translation), null);
+        assertEquals("x", out.get(0).getDetail().getS());
+    }
+
+    @Test
+    void copyPropertiesWithNewValue() {
+        A a = new A();
+        a.setName("x");
+        a.setValue(5);
+
+        A out = new A();
+        KanopusBeanUtils.copyProperties(a, out, new KanopusBeanUtils.BeanProperty("name", String.class, "y"));
+        assertEquals("y", out.getName());
+        assertEquals(5, out.getValue());
+        assertEquals("x", a.getName());
+    }
+
+    @Test
+    void copyWithGeneratedEngine() {
+        KanopusBeanUtils.setCopyEngine(KanopusBeanUtils.CopyEngine.GENERATED);
+        try {
+            BeanMapper<A, A> mapper = KanopusBeanUtils.getMapper(A.class, A.class);
+            assertTrue(mapper.getClass().getName().contains("GeneratedBeanMapper"));
+
+            A a = new A();
+            a.setName("x");
+            a.setValue(5);
+            B b = new B();
+            b.setS("s");
+            a.getList().add(b);
+
+            A out = new A();
+            mapper.map(a, out);
+            assertEquals("x", out.getName());
+            assertEquals(5, out.getValue());
+            assertEquals(1, out.getList().size());
+            assertNotSame(b, out.getList().get(0));
+            assertEquals("s", out.getList().get(0).getS());
+
+            // null source values are not copied
+            a.setName(null);
+            mapper.map(a, out);
+            assertEquals("x", out.getName());
+
+            D d = new D();
+            d.setName("d");
+            d.setCreated(new Date(0));
+            List<E> copied = KanopusBeanUtils.copyList(Collections.singletonList(d), E.class);
+            assertEquals("d", copied.get(0).getName());
+            assertEquals(Utils.getLocalDateTime(d.getCreated()), copied.get(0).getCreated());
+        } finally {
+            KanopusBeanUtils.setCopyEngine(KanopusBeanUtils.CopyEngine.REFLECTION);
+        }
+    }
+
+    @Test
+    void copyListParallelAndStream() {
+        List<A> source = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            A a = new A();
+            a.setName("n" + i);
+            a.setValue(i);
+            source.add(a);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<C> copied;
+        List<C> copiedFromLinked;
+        try {
+            copied = KanopusBeanUtils.copyListParallel(source, C.class, executor);
+            copiedFromLinked = KanopusBeanUtils.copyListParallel(new LinkedList<>(source), C.class, executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(source.size(), copied.size());
+        assertEquals(source.size(), copiedFromLinked.size());
+        for (int i = 0; i < source.size(); i++) {
+            assertEquals(i, copied.get(i).getValue());
+            assertEquals(i, copiedFromLinked.get(i).getValue());
+        }
+
+        List<A> streamed = KanopusBeanUtils.copyStream(source.stream().limit(3), A.class).collect(Collectors.toList());
+        assertEquals(3, streamed.size());
+        assertEquals("n2", streamed.get(2).getName());
+        assertNotSame(source.get(2), streamed.get(2));
+
+        Iterator<A> iterator = KanopusBeanUtils.copyIterator(source.iterator(), A.class);
+        assertTrue(iterator.hasNext());
+        assertEquals("n0", iterator.next().getName());
+    }
+
+    @Test
+    void copyWithRegisteredTranslation() {
+        Map<String, String> translation = new HashMap<>();
+        translation.put("name", "title");
+        KanopusBeanUtils.registerTranslation(D.class, C.class, translation);
+        translation.put("name", "detail.s");
+
+        D d = new D();
+        d.setName("d");
+        C out = KanopusBeanUtils.copyProperties(d, C.class);
+        assertEquals("d", out.getTitle());
+        assertNull(out.getDetail());
+
+        List<C> copied = KanopusBeanUtils.copyList(Collections.singletonList(d), C.class);
+        assertEquals("d", copied.get(0).getTitle());
+    }
+
+    @Test
+    void copyCyclicGraph() {
+        Node root = new Node();
+        root.setName("root");
+        for (int i = 0; i < 3; i++) {
+            Node child = new Node();
+            child.setName("c" + i);
+            child.setParent(root);
+            root.getChildren().add(child);
+        }
+
+        for (KanopusBeanUtils.CopyEngine engine : KanopusBeanUtils.CopyEngine.values()) {
+            KanopusBeanUtils.setCopyEngine(engine);
+            try {
+                Node copy = KanopusBeanUtils.copyProperties(root, Node.class);
+                assertNotSame(root, copy);
+                assertEquals(3, copy.getChildren().size());
+                for (Node child : copy.getChildren()) {
+                    assertNotSame(root.getChildren().get(0), child);
+                    assertSame(copy, child.getParent());
+                }
+                assertEquals("c2", copy.getChildren().get(2).getName());
+
+                Node child = KanopusBeanUtils.copyProperties(root.getChildren().get(1), Node.class);
+                assertSame(child, child.getParent().getChildren().get(1));
+            } finally {
+                KanopusBeanUtils.setCopyEngine(KanopusBeanUtils.CopyEngine.REFLECTION);
+            }
+        }
+    }
+
+    @Test
+    void copySharedReference() {
+        B shared = new B();
+        shared.setS("shared");
+        Node node = new Node();
+        node.setDetail(shared);
+        node.setOther(shared);
+
+        Node copy = KanopusBeanUtils.copyProperties(node, Node.class);
+        assertNotSame(shared, copy.getDetail());
+        assertSame(copy.getDetail(), copy.getOther());
+        assertEquals("shared", copy.getOther().getS());
+
+        List<Node> copied = KanopusBeanUtils.copyList(List.of(node, node), Node.class);
+        assertSame(copied.get(0), copied.get(1));
+
+        // null elements have no identity to share
+        List<Node> fromNulls = KanopusBeanUtils.copyList(Arrays.asList(null, null), Node.class);
+        assertEquals(2, fromNulls.size());
+        assertNotSame(fromNulls.get(0), fromNulls.get(1));
+    }
+
+    @Test
+    void copyDeepGraph() {
+        Node head = new Node();
+        Node tail = head;
+        for (int i = 0; i < 10000; i++) {
+            Node next = new Node();
+            next.setName("n" + i);
+            tail.setParent(next);
+            tail = next;
+        }
+
+        Node copy = KanopusBeanUtils.copyProperties(head, Node.class);
+        int depth = 0;
+        for (Node n = copy.getParent(); n != null; n = n.getParent()) {
+            depth++;
+        }
+        assertTrue(depth > 0 && depth <= CopyContext.MAX_DEPTH);
+    }
 }
@@ -0,0 +1,88 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ParallelUtilsTest {
+
+    @Test
+    void forEachRange_visitsEachIndexOnce() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AtomicIntegerArray visits = new AtomicIntegerArray(1001);
+            ParallelUtils.forEachRange(visits.length(), 10, executor, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    visits.incrementAndGet(i);
+                }
+            });
+            for (int i = 0; i < visits.length(); i++) {
+                Assertions.assertEquals(1, visits.get(i), "index " + i);
+            }
+
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> ParallelUtils.forEachRange(1000, 10, executor, (from, to) -> {
+                if (from == 0) {
+                    throw new IllegalStateException("first range");
+                }
+            }));
+            Assertions.assertEquals("first range", e.getMessage());
+
+            AssertionError error = Assertions.assertThrows(AssertionError.class, () -> ParallelUtils.forEachRange(1000, 10, executor, (from, to) -> {
+                if (from == 0) {
+                    throw new AssertionError("first range");
+                }
+            }));
+            Assertions.assertEquals("first range", error.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void forEachRange_smallWork_runsInTheCallingThread() {
+        Thread caller = Thread.currentThread();
+        int[] ranges = new int[1];
+        ParallelUtils.forEachRange(15, 10, r -> Assertions.fail("not split"), (from, to) -> {
+            Assertions.assertSame(caller, Thread.currentThread());
+            Assertions.assertEquals(0, from);
+            Assertions.assertEquals(15, to);
+            ranges[0]++;
+        });
+        Assertions.assertEquals(1, ranges[0]);
+    }
+
+    @Test
+    void forEachRange_invalidArguments_throwIllegalArgumentException() {
+        ParallelUtils.RangeTask task = (from, to) -> Assertions.fail("not run");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelUtils.forEachRange(-1, 10, Runnable::run, task));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelUtils.forEachRange(100, 0, Runnable::run, task));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelUtils.forEachRange(100, -5, Runnable::run, task));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelUtils.forEachRange(100, 10, null, task));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelUtils.forEachRange(100, 10, Runnable::run, null));
+    }
+}
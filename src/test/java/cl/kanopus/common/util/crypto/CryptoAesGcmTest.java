@@ -41,12 +41,91 @@ class CryptoAesGcmTest {
         Assertions.assertEquals(plain, decrypted);
     }
 
+    @Test
+    void encrypt_usesV2AndStillDecryptsV1() {
+        char[] key = "0123456789012345".toCharArray();
+        String plain = "Hola, ñandú!";
+
+        String v2 = CryptoAesGcm.encrypt(key, plain);
+        String other = CryptoAesGcm.encrypt(key, plain);
+        Assertions.assertTrue(v2.startsWith("v2:hkdf:210000:"));
+        Assertions.assertEquals(7, v2.split(":").length);
+        Assertions.assertNotEquals(v2, other);
+        // same master salt, different nonce
+        Assertions.assertEquals(v2.split(":")[3], other.split(":")[3]);
+        Assertions.assertNotEquals(v2.split(":")[4], other.split(":")[4]);
+
+        String v1 = CryptoAesGcm.encryptV1(key, plain);
+        Assertions.assertTrue(v1.startsWith("v1:pbkdf2:"));
+        Assertions.assertEquals(plain, CryptoAesGcm.decrypt(key, v1));
+        Assertions.assertEquals(plain, CryptoAesGcm.decrypt(key, other));
+    }
+
+    @Test
+    void decrypt_v2WithWrongKeyOrTamperedHeader_fails() {
+        char[] key = "0123456789012345".toCharArray();
+        String[] parts = CryptoAesGcm.encrypt(key, "secret").split(":");
+
+        Assertions.assertThrows(CryptoException.class, () -> CryptoAesGcm.decrypt("another-key".toCharArray(), String.join(":", parts)));
+        String[] otherNonce = CryptoAesGcm.encrypt(key, "secret").split(":");
+        parts[4] = otherNonce[4];
+        Assertions.assertThrows(CryptoException.class, () -> CryptoAesGcm.decrypt(key, String.join(":", parts)));
+    }
+
     @Test
     void decrypt_badFormat_throwsIllegalArgumentException() {
         char[] key = "0123456789012345".toCharArray();
         Assertions.assertThrows(IllegalArgumentException.class, () -> CryptoAesGcm.decrypt(key, "bad-format"));
     }
 
+    @Test
+    void decrypt_foreignParameters_areRejectedBeforeDerivingAKey() {
+        char[] key = "0123456789012345".toCharArray();
+        String[] parts = CryptoAesGcm.encrypt(key, "secret").split(":");
+
+        String[] iterations = parts.clone();
+        iterations[2] = "2000000000";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptoAesGcm.decrypt(key, String.join(":", iterations)));
+        String[] shortSalt = parts.clone();
+        shortSalt[3] = "AAAA";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptoAesGcm.decrypt(key, String.join(":", shortSalt)));
+        String[] v1 = CryptoAesGcm.encryptV1(key, "secret").split(":");
+        v1[2] = "2000000000";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptoAesGcm.decrypt(key, String.join(":", v1)));
+    }
+
+    @Test
+    void decrypt_v2WrittenWithAnotherIterationCount() {
+        char[] key = "0123456789012345".toCharArray();
+        String older = CryptoAesGcm.encryptV2(key, 1000, "secret");
+        Assertions.assertTrue(older.startsWith("v2:hkdf:1000:"));
+        Assertions.assertEquals("secret", CryptoAesGcm.decrypt(key, older));
+        Assertions.assertEquals("secret", new CryptoEngine(key).decrypt(older));
+        Assertions.assertThrows(CryptoException.class, () -> CryptoAesGcm.decrypt(key, older.replace("v2:hkdf:1000:", "v2:hkdf:1001:")));
+    }
+
+    @Test
+    void decrypt_cachesTheMasterKeyOfASaltOnlyOnceTheTagVerifies() {
+        char[] key = "0123456789012345".toCharArray();
+        byte[] fingerprint = CryptoAesGcm.fingerprint(key);
+        String salt = CryptoAesGcm.newMasterSalt();
+        byte[] saltBytes = CryptoAesGcm.decodeMasterSalt(salt);
+        String[] parts = CryptoAesGcm.encrypt(key, "secret").split(":");
+        parts[3] = salt;
+
+        Assertions.assertThrows(CryptoException.class, () -> CryptoAesGcm.decrypt(key, String.join(":", parts)));
+        Assertions.assertFalse(CryptoAesGcm.isMasterKeyCached(fingerprint, saltBytes));
+
+        char[] other = "another-passphrase".toCharArray();
+        String encoded = new CryptoEngine(other, saltBytes).encrypt("secret");
+        Assertions.assertEquals(salt, encoded.split(":")[3]);
+        Assertions.assertThrows(CryptoException.class, () -> CryptoAesGcm.decrypt(key, encoded));
+        Assertions.assertFalse(CryptoAesGcm.isMasterKeyCached(fingerprint, saltBytes));
+
+        Assertions.assertEquals("secret", new CryptoEngine(key, saltBytes).decrypt(new CryptoEngine(key, saltBytes).encrypt("secret")));
+        Assertions.assertTrue(CryptoAesGcm.isMasterKeyCached(fingerprint, saltBytes));
+    }
+
     @Test
     void hashAndVerifyHash_behaviour() {
         String password = "s3cr3t-pw";
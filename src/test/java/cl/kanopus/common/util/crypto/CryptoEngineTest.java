@@ -0,0 +1,139 @@
+/*-
+ * !--
+ * For support and inquiries regarding this library, please contact:
+ *   soporte@kanopus.cl
+ *
+ * Project website:
+ *   https://www.kanopus.cl
+ * %%
+ * Copyright (C) 2025 Pablo Díaz Saavedra
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * --!
+ */
+package cl.kanopus.common.util.crypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CryptoEngineTest {
+
+    @Test
+    void engine_roundtripAndInteroperatesWithStaticApi() {
+        char[] key = "engine-passphrase".toCharArray();
+        CryptoEngine engine = new CryptoEngine(key);
+
+        String encoded = engine.encrypt("Hello");
+        Assertions.assertTrue(encoded.startsWith("v2:"));
+        Assertions.assertEquals("Hello", engine.decrypt(encoded));
+        Assertions.assertEquals("Hello", CryptoAesGcm.decrypt(key, encoded));
+        Assertions.assertEquals("Hello", engine.decrypt(CryptoAesGcm.encrypt(key, "Hello")));
+        Assertions.assertEquals("Hello", engine.decrypt(CryptoAesGcm.encryptV1(key, "Hello")));
+
+        CryptoEngine other = new CryptoEngine("other-passphrase".toCharArray());
+        Assertions.assertThrows(CryptoException.class, () -> other.decrypt(encoded));
+    }
+
+    @Test
+    void engine_isSafeAcrossThreads() throws Exception {
+        CryptoEngine engine = new CryptoEngine("engine-passphrase".toCharArray());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String plain = "value-" + i;
+                results.add(pool.submit(() -> plain.equals(engine.decrypt(engine.encrypt(plain)))));
+            }
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void pool_reusesAndBoundsIdleInstances() throws Exception {
+        int[] created = new int[1];
+        CryptoPool<Object> pool = new CryptoPool<>(() -> {
+            created[0]++;
+            return new Object();
+        }, 1);
+
+        Object first = pool.borrow();
+        Object second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        Assertions.assertSame(first, pool.borrow());
+        Assertions.assertNotSame(second, pool.borrow());
+        Assertions.assertEquals(3, created[0]);
+    }
+
+    @Test
+    void encryptAll_keepsOrderAcrossChunks() {
+        CryptoEngine engine = new CryptoEngine("engine-passphrase".toCharArray());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<String> plain = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                plain.add((i % 100 == 0) ? null : "value-" + i);
+            }
+            List<String> encoded = engine.encryptAll(plain, pool);
+            Assertions.assertEquals(plain.size(), encoded.size());
+            Assertions.assertNull(encoded.get(0));
+            Assertions.assertEquals(plain, engine.decryptAll(encoded, pool));
+            Assertions.assertEquals(plain, engine.decryptAll(encoded));
+            Assertions.assertEquals(plain, engine.decryptStream(engine.encryptStream(plain.parallelStream())).collect(Collectors.toList()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void decryptAll_failsFastOnBadValue() {
+        CryptoEngine engine = new CryptoEngine("engine-passphrase".toCharArray());
+        List<String> encoded = new ArrayList<>(engine.encryptAll(Collections.nCopies(500, "value")));
+        encoded.set(250, new CryptoEngine("other-passphrase".toCharArray()).encrypt("value"));
+
+        Assertions.assertThrows(CryptoException.class, () -> engine.decryptAll(encoded));
+        Assertions.assertThrows(CryptoException.class, () -> engine.decryptAll(encoded.subList(245, 255)));
+    }
+
+    @Test
+    void tryDecryptAll_collectsErrorsPerValue() {
+        CryptoEngine engine = new CryptoEngine("engine-passphrase".toCharArray());
+        List<String> encoded = new ArrayList<>(engine.encryptAll(Collections.nCopies(200, "value")));
+        encoded.set(10, new CryptoEngine("other-passphrase".toCharArray()).encrypt("value"));
+        encoded.set(150, "not-encrypted");
+
+        List<CryptoResult> results = engine.tryDecryptAll(encoded, Runnable::run);
+        Assertions.assertEquals(200, results.size());
+        Assertions.assertInstanceOf(CryptoException.class, results.get(10).getError());
+        Assertions.assertFalse(results.get(150).isSuccess());
+        Assertions.assertNull(results.get(150).getValue());
+        Assertions.assertEquals(198, results.stream().filter(CryptoResult::isSuccess).count());
+        Assertions.assertEquals("value", results.get(0).getValue());
+
+        List<CryptoResult> small = engine.tryEncryptAll(Arrays.asList("a", null), Runnable::run);
+        Assertions.assertTrue(small.get(1).isSuccess());
+        Assertions.assertNull(small.get(1).getValue());
+    }
+}
@@ -23,6 +23,8 @@
  */
 package cl.kanopus.common.util.crypto;
 
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -38,6 +40,49 @@ class CryptographyUtilsTest {
         Assertions.assertEquals(plain, decoded);
     }
 
+    @Test
+    void getEngine_followsTheConfiguredPassphrase() {
+        CryptographyUtils.setEncryptKey("first-passphrase", CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        CryptoEngine first = CryptographyUtils.getEngine();
+        Assertions.assertSame(first, CryptographyUtils.getEngine());
+        String encoded = CryptographyUtils.encrypt("Data");
+
+        CryptographyUtils.setEncryptKey("second-passphrase", CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        Assertions.assertNotSame(first, CryptographyUtils.getEngine());
+        Assertions.assertThrows(CryptoException.class, () -> CryptographyUtils.decrypt(encoded));
+        Assertions.assertEquals("Data", CryptographyUtils.newEngine("first-passphrase").decrypt(encoded));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptographyUtils.newEngine(" "));
+    }
+
+    @Test
+    void setEncryptKey_withMasterSalt_keepsOneMasterKeyAcrossProcesses() {
+        String salt = CryptographyUtils.newMasterSalt();
+        CryptographyUtils.setEncryptKey("salted-passphrase", salt, CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        String encoded = CryptographyUtils.encrypt("Data");
+        Assertions.assertEquals(salt, encoded.split(":")[3]);
+
+        // another process, configured with the same passphrase and salt
+        CryptoEngine other = CryptographyUtils.newEngine("salted-passphrase", salt);
+        Assertions.assertEquals(salt, other.encrypt("Data").split(":")[3]);
+        Assertions.assertEquals("Data", other.decrypt(encoded));
+
+        CryptographyUtils.setEncryptKey("salted-passphrase", CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        Assertions.assertNotEquals(salt, CryptographyUtils.encrypt("Data").split(":")[3]);
+        Assertions.assertEquals("Data", CryptographyUtils.decrypt(encoded));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptographyUtils.setEncryptKey("salted-passphrase", "c2hvcnQ", CryptographyUtils.CryptoAlgorithm.AES_GCM));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CryptographyUtils.newEngine("salted-passphrase", "not base64!"));
+    }
+
+    @Test
+    void encryptAll_roundtripsThroughTheEngine() {
+        CryptographyUtils.setEncryptKey("batch-passphrase", CryptographyUtils.CryptoAlgorithm.AES_GCM);
+        List<String> plain = Arrays.asList("a", "b", null, "c");
+        List<String> encoded = CryptographyUtils.encryptAll(plain);
+        Assertions.assertEquals("b", CryptographyUtils.decrypt(encoded.get(1)));
+        Assertions.assertEquals(plain, CryptographyUtils.decryptAll(encoded));
+    }
+
     @Test
     void setEncryptKey_withBlank_throwsIllegalArgumentException() {
         Assertions.assertThrows(IllegalArgumentException.class, () -> CryptographyUtils.setEncryptKey("  ", CryptographyUtils.CryptoAlgorithm.AES_GCM));